@@ -0,0 +1,38 @@
+package aes.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The {@code BenchmarkRunner} runs the benchmarks with the usual JMH command
+ * line options. The GC profiler is always enabled, so the allocation rate is
+ * reported next to the time, and unless the options say otherwise the results
+ * are saved as JSON into {@code jmh-result.json} for comparison between builds.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args JMH command line options, e.g. a regular expression selecting the benchmarks
+     * @throws CommandLineOptionException if the options are not valid
+     * @throws RunnerException exception while running the benchmarks
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class);
+        if (!commandLine.getResultFormat().hasValue())
+            options.resultFormat(ResultFormatType.JSON);
+        if (!commandLine.getResult().hasValue())
+            options.result("jmh-result.json");
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package aes.benchmarks;
+
+import aes.BlockCipher;
+import aes.CipherEngine;
+import aes.ExpandedKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code BlockCipherBenchmark} measures time of a single block
+ * (ns/block) for all engines and key sizes, both for the block API
+ * and the legacy String API. The vector engine needs the JMH option
+ * {@code -jvmArgsAppend --add-modules=jdk.incubator.vector}, otherwise
+ * it falls back to the table engine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BlockCipherBenchmark {
+    private static final int BULK_BLOCKS = 4096; // blocks in a single call of encryptBlocks/decryptBlocks
+
+    @Param({"reference", "table", "vector", "constant-time"})
+    public String engine;
+
+    @Param({"16", "24", "32"})
+    public int keySize;
+
+    private BlockCipher cipher;
+    private byte[] block;
+    private int[] datablock; // block for the legacy API
+    private ByteBuffer input;
+    private ByteBuffer output;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        byte[] key = new byte[keySize];
+        random.nextBytes(key);
+        cipher = CipherEngine.fromName(engine).create(ExpandedKey.of(key));
+        block = new byte[BlockCipher.BLOCK_SIZE];
+        random.nextBytes(block);
+        datablock = new int[BlockCipher.BLOCK_SIZE];
+        for (int i = 0; i < datablock.length; i++) {
+            datablock[i] = block[i] & 0xff;
+        }
+        input = ByteBuffer.allocateDirect(BULK_BLOCKS * BlockCipher.BLOCK_SIZE);
+        output = ByteBuffer.allocateDirect(BULK_BLOCKS * BlockCipher.BLOCK_SIZE);
+    }
+
+    @Benchmark
+    public byte[] encryptBlock() {
+        cipher.encryptBlock(block, 0, block, 0);
+        return block;
+    }
+
+    @Benchmark
+    public byte[] decryptBlock() {
+        cipher.decryptBlock(block, 0, block, 0);
+        return block;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_BLOCKS)
+    public ByteBuffer encryptBlocks() {
+        input.clear();
+        output.clear();
+        cipher.encryptBlocks(input, output, BULK_BLOCKS);
+        return output;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_BLOCKS)
+    public ByteBuffer decryptBlocks() {
+        input.clear();
+        output.clear();
+        cipher.decryptBlocks(input, output, BULK_BLOCKS);
+        return output;
+    }
+
+    @Benchmark
+    public String encryptString() {
+        return cipher.encrypt(datablock);
+    }
+
+    @Benchmark
+    public byte[] decryptString() {
+        return cipher.decrypt(datablock);
+    }
+}
@@ -0,0 +1,33 @@
+package aes.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The {@code ByteCounter} is a secondary result of the throughput benchmarks,
+ * it counts processed megabytes, so JMH reports them as MB per time unit.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ByteCounter {
+    private static final double MEGABYTE = 1_000_000.0;
+
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        megabytes = 0;
+    }
+
+    /**
+     * Add processed bytes.
+     *
+     * @param bytes count of bytes
+     */
+    public void add(long bytes) {
+        megabytes += bytes / MEGABYTE;
+    }
+}
@@ -0,0 +1,127 @@
+package aes.benchmarks;
+
+import aes.BlockCipher;
+import aes.CipherEngine;
+import aes.ChannelFileProcessor;
+import aes.ExpandedKey;
+import aes.FileProcessor;
+import aes.GcmFileProcessor;
+import aes.MappedFileProcessor;
+import aes.ParallelCounterFileProcessor;
+import aes.PipelinedFileProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The {@code FileBenchmark} measures encryption/decryption of whole files
+ * by the file processors used by {@code Main}, i.e. files per second
+ * and MB/s in the secondary result {@code megabytes}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileBenchmark {
+    private static final int CHUNK = 1 << 20; // size of the chunk written while creating the plaintext
+
+    @Param({"65536", "16777216", "268435456"})
+    public long size;
+
+    @Param({"channel", "mmap", "ctr", "gcm", "pipeline"})
+    public String processor;
+
+    @Param({"table", "vector", "constant-time"})
+    public String engine;
+
+    private Path directory;
+    private Path plaintext;
+    private Path ciphertext;
+    private Path encrypted;
+    private Path decrypted;
+    private FileProcessor fileProcessor;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("aes-benchmark");
+        plaintext = directory.resolve("plaintext");
+        ciphertext = directory.resolve("ciphertext");
+        encrypted = directory.resolve("encrypted");
+        decrypted = directory.resolve("decrypted");
+
+        Random random = new Random(42);
+        byte[] chunk = new byte[CHUNK];
+        try (OutputStream out = Files.newOutputStream(plaintext)) {
+            for (long written = 0; written < size; written += CHUNK) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int)Math.min(CHUNK, size - written));
+            }
+        }
+
+        byte[] key = new byte[16];
+        random.nextBytes(key);
+        ExpandedKey expandedKey = ExpandedKey.of(key);
+        CipherEngine cipherEngine = CipherEngine.fromName(engine);
+        BlockCipher cipher = cipherEngine.create(expandedKey);
+        switch (processor) {
+            case "channel":
+                fileProcessor = new ChannelFileProcessor(cipher);
+                break;
+            case "mmap":
+                fileProcessor = new MappedFileProcessor(cipher);
+                break;
+            case "ctr":
+                fileProcessor = new ParallelCounterFileProcessor(() -> cipherEngine.create(expandedKey));
+                break;
+            case "gcm":
+                fileProcessor = new GcmFileProcessor(() -> cipherEngine.create(expandedKey));
+                break;
+            case "pipeline":
+                fileProcessor = new PipelinedFileProcessor(() -> cipherEngine.create(expandedKey),
+                        Runtime.getRuntime().availableProcessors());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown processor: " + processor);
+        }
+        fileProcessor.encrypt(plaintext, ciphertext);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void encrypt(ByteCounter counter) throws IOException {
+        fileProcessor.encrypt(plaintext, encrypted);
+        counter.add(size);
+    }
+
+    @Benchmark
+    public void decrypt(ByteCounter counter) throws IOException {
+        fileProcessor.decrypt(ciphertext, decrypted);
+        counter.add(size);
+    }
+}
@@ -0,0 +1,69 @@
+package aes.benchmarks;
+
+import aes.BlockCipher;
+import aes.CipherEngine;
+import aes.ExpandedKey;
+import aes.KeyScheduleCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code KeyExpansionBenchmark} measures expansion of the key,
+ * lookup of an already expanded key in the cache and creation
+ * of a cipher from the expanded key.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyExpansionBenchmark {
+    @Param({"reference", "table", "constant-time"})
+    public String engine;
+
+    @Param({"16", "24", "32"})
+    public int keySize;
+
+    private byte[] key;
+    private ExpandedKey expandedKey;
+    private KeyScheduleCache cache;
+    private CipherEngine cipherEngine;
+
+    @Setup
+    public void setUp() {
+        key = new byte[keySize];
+        new Random(42).nextBytes(key);
+        expandedKey = ExpandedKey.of(key);
+        cache = new KeyScheduleCache();
+        cache.get(key);
+        cipherEngine = CipherEngine.fromName(engine);
+    }
+
+    @Benchmark
+    public ExpandedKey expand() {
+        return ExpandedKey.of(key);
+    }
+
+    @Benchmark
+    public ExpandedKey cacheHit() {
+        return cache.get(key);
+    }
+
+    @Benchmark
+    public BlockCipher createCipher() {
+        return cipherEngine.create(expandedKey);
+    }
+}
@@ -0,0 +1,568 @@
+package aes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@code VectorAdvancedEncryptionStandard} class is a multi-block AES engine
+ * using the Vector API. The state is bitsliced: each of 8 bit planes holds one bit
+ * of every byte of 4 blocks in a 64-bit word, and every lane of a vector holds
+ * the word of different 4 blocks, so {@link #BLOCKS} blocks (16 or 32, depending on
+ * the width of the SIMD registers) go through the rounds at once. SubBytes is
+ * computed by the Boolean circuit of Boyar and Peralta, ShiftRows and MixColumns
+ * are shifts and rotations inside the lanes, so the rounds need neither table
+ * lookups nor gathers, which are as slow as the scalar lookups.
+ * <p>
+ * Only the bulk methods are vectorized, single blocks and the rest of the bulk
+ * which does not fill all lanes are processed by the table engine. The class
+ * needs the module {@code jdk.incubator.vector}, it is loaded reflectively
+ * by {@link CipherEngine#VECTOR}, which falls back to the table engine
+ * if the module is not available.
+ */
+public final class VectorAdvancedEncryptionStandard implements BlockCipher {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length(); // count of 64-bit lanes, each holds 4 blocks
+    /** Count of blocks processed at once. */
+    public static final int BLOCKS = 4 * LANES;
+
+    private static final int SIZE = 16; // size of the datablock
+    private static final int COLUMN_SIZE = 4; // size of the column/row
+    private static final int PLANES = 8; // count of bit planes of the state
+    private static final int TEMP_PLANES = 40; // count of intermediate planes of the S-Box
+    private static final int REDUCTION = 0x1B; // x^8 reduced by x^8 + x^4 + x^3 + x + 1
+
+    private final long[] roundKeys; // bitsliced round keys, 8 planes per round, see Bitslice
+    private final int rounds; // count of rounds, 10, 12 or 14
+    private final TableAdvancedEncryptionStandard single; // engine for single blocks
+    private final long[] state = new long[PLANES * LANES]; // plane i of all lanes at i * LANES
+    private final long[] temp = new long[TEMP_PLANES * LANES]; // intermediate planes of the S-Box
+
+    /**
+     * Create an instance of AES using already expanded key.
+     *
+     * @param key expanded key
+     */
+    public VectorAdvancedEncryptionStandard(ExpandedKey key) {
+        this.rounds = key.getRounds();
+        this.single = new TableAdvancedEncryptionStandard(key);
+        this.roundKeys = Bitslice.roundKeys(key);
+    }
+
+    /**
+     * Check that the platform has SIMD registers for at least 4 lanes (16 blocks),
+     * otherwise the table engine is faster.
+     *
+     * @return true if the engine should be used
+     */
+    public static boolean isSupported() {
+        return LANES >= 4;
+    }
+
+    @Override
+    public void encryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        single.encryptBlock(in, inOff, out, outOff);
+    }
+
+    @Override
+    public void decryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        single.decryptBlock(in, inOff, out, outOff);
+    }
+
+    @Override
+    public void encryptBlock(ByteBuffer in, ByteBuffer out) {
+        single.encryptBlock(in, out);
+    }
+
+    @Override
+    public void decryptBlock(ByteBuffer in, ByteBuffer out) {
+        single.decryptBlock(in, out);
+    }
+
+    @Override
+    public void encryptBlocks(ByteBuffer in, ByteBuffer out, int blocks) {
+        for (; blocks >= BLOCKS; blocks -= BLOCKS) {
+            load(in);
+            addRoundKey(0);
+            for (int round = 1; round < rounds; round++) {
+                subBytes();
+                shiftRows(-1);
+                mixColumns(round);
+            }
+            subBytes();
+            shiftRows(rounds);
+            store(out);
+        }
+        single.encryptBlocks(in, out, blocks);
+    }
+
+    @Override
+    public void decryptBlocks(ByteBuffer in, ByteBuffer out, int blocks) {
+        for (; blocks >= BLOCKS; blocks -= BLOCKS) {
+            load(in);
+            addRoundKey(rounds);
+            for (int round = rounds - 1; round > 0; round--) {
+                invShiftRows();
+                invSubBytes();
+                addRoundKey(round);
+                invMixColumns();
+            }
+            invShiftRows();
+            invSubBytes();
+            addRoundKey(0);
+            store(out);
+        }
+        single.decryptBlocks(in, out, blocks);
+    }
+
+    /**
+     * Make AddRoundKey in all lanes.
+     *
+     * @param round index of the round key
+     */
+    private void addRoundKey(int round) {
+        for (int i = 0; i < PLANES; i++) {
+            plane(state, i).lanewise(VectorOperators.XOR, roundKeys[round * PLANES + i]).intoArray(state, i * LANES);
+        }
+    }
+
+    /**
+     * Make SubBytes in all lanes by the circuit of Boyar and Peralta. The circuit is split into
+     * three methods connecting through the temporary planes, a single method would be too big
+     * for the JIT compiler to keep all vectors in registers.
+     */
+    private void subBytes() {
+        subBytesTop();
+        subBytesMiddle();
+        subBytesBottom();
+    }
+
+    /** Compute the top linear transformation of the S-Box, x0 is the highest bit. */
+    private void subBytesTop() {
+        LongVector x0 = plane(state, 7);
+        LongVector x1 = plane(state, 6);
+        LongVector x2 = plane(state, 5);
+        LongVector x3 = plane(state, 4);
+        LongVector x4 = plane(state, 3);
+        LongVector x5 = plane(state, 2);
+        LongVector x6 = plane(state, 1);
+        LongVector x7 = plane(state, 0);
+        LongVector y14 = x3.lanewise(VectorOperators.XOR, x5);
+        LongVector y13 = x0.lanewise(VectorOperators.XOR, x6);
+        LongVector y9 = x0.lanewise(VectorOperators.XOR, x3);
+        LongVector y8 = x0.lanewise(VectorOperators.XOR, x5);
+        LongVector t0 = x1.lanewise(VectorOperators.XOR, x2);
+        LongVector y1 = t0.lanewise(VectorOperators.XOR, x7);
+        LongVector y4 = y1.lanewise(VectorOperators.XOR, x3);
+        LongVector y12 = y13.lanewise(VectorOperators.XOR, y14);
+        LongVector y2 = y1.lanewise(VectorOperators.XOR, x0);
+        LongVector y5 = y1.lanewise(VectorOperators.XOR, x6);
+        LongVector y3 = y5.lanewise(VectorOperators.XOR, y8);
+        LongVector t1 = x4.lanewise(VectorOperators.XOR, y12);
+        LongVector y15 = t1.lanewise(VectorOperators.XOR, x5);
+        LongVector y20 = t1.lanewise(VectorOperators.XOR, x1);
+        LongVector y6 = y15.lanewise(VectorOperators.XOR, x7);
+        LongVector y10 = y15.lanewise(VectorOperators.XOR, t0);
+        LongVector y11 = y20.lanewise(VectorOperators.XOR, y9);
+        LongVector y7 = x7.lanewise(VectorOperators.XOR, y11);
+        LongVector y17 = y10.lanewise(VectorOperators.XOR, y11);
+        LongVector y19 = y10.lanewise(VectorOperators.XOR, y8);
+        LongVector y16 = t0.lanewise(VectorOperators.XOR, y11);
+        LongVector y21 = y13.lanewise(VectorOperators.XOR, y16);
+        LongVector y18 = x0.lanewise(VectorOperators.XOR, y16);
+        x7.intoArray(temp, 0);
+        y1.intoArray(temp, LANES);
+        y2.intoArray(temp, 2 * LANES);
+        y3.intoArray(temp, 3 * LANES);
+        y4.intoArray(temp, 4 * LANES);
+        y5.intoArray(temp, 5 * LANES);
+        y6.intoArray(temp, 6 * LANES);
+        y7.intoArray(temp, 7 * LANES);
+        y8.intoArray(temp, 8 * LANES);
+        y9.intoArray(temp, 9 * LANES);
+        y10.intoArray(temp, 10 * LANES);
+        y11.intoArray(temp, 11 * LANES);
+        y12.intoArray(temp, 12 * LANES);
+        y13.intoArray(temp, 13 * LANES);
+        y14.intoArray(temp, 14 * LANES);
+        y15.intoArray(temp, 15 * LANES);
+        y16.intoArray(temp, 16 * LANES);
+        y17.intoArray(temp, 17 * LANES);
+        y18.intoArray(temp, 18 * LANES);
+        y19.intoArray(temp, 19 * LANES);
+        y20.intoArray(temp, 20 * LANES);
+        y21.intoArray(temp, 21 * LANES);
+    }
+
+    /** Compute the non-linear section of the S-Box. */
+    private void subBytesMiddle() {
+        LongVector x7 = plane(temp, 0);
+        LongVector y1 = plane(temp, 1);
+        LongVector y2 = plane(temp, 2);
+        LongVector y3 = plane(temp, 3);
+        LongVector y4 = plane(temp, 4);
+        LongVector y5 = plane(temp, 5);
+        LongVector y6 = plane(temp, 6);
+        LongVector y7 = plane(temp, 7);
+        LongVector y8 = plane(temp, 8);
+        LongVector y9 = plane(temp, 9);
+        LongVector y10 = plane(temp, 10);
+        LongVector y11 = plane(temp, 11);
+        LongVector y12 = plane(temp, 12);
+        LongVector y13 = plane(temp, 13);
+        LongVector y14 = plane(temp, 14);
+        LongVector y15 = plane(temp, 15);
+        LongVector y16 = plane(temp, 16);
+        LongVector y17 = plane(temp, 17);
+        LongVector y18 = plane(temp, 18);
+        LongVector y19 = plane(temp, 19);
+        LongVector y20 = plane(temp, 20);
+        LongVector y21 = plane(temp, 21);
+        LongVector t2 = y12.and(y15);
+        LongVector t3 = y3.and(y6);
+        LongVector t4 = t3.lanewise(VectorOperators.XOR, t2);
+        LongVector t5 = y4.and(x7);
+        LongVector t6 = t5.lanewise(VectorOperators.XOR, t2);
+        LongVector t7 = y13.and(y16);
+        LongVector t8 = y5.and(y1);
+        LongVector t9 = t8.lanewise(VectorOperators.XOR, t7);
+        LongVector t10 = y2.and(y7);
+        LongVector t11 = t10.lanewise(VectorOperators.XOR, t7);
+        LongVector t12 = y9.and(y11);
+        LongVector t13 = y14.and(y17);
+        LongVector t14 = t13.lanewise(VectorOperators.XOR, t12);
+        LongVector t15 = y8.and(y10);
+        LongVector t16 = t15.lanewise(VectorOperators.XOR, t12);
+        LongVector t17 = t4.lanewise(VectorOperators.XOR, t14);
+        LongVector t18 = t6.lanewise(VectorOperators.XOR, t16);
+        LongVector t19 = t9.lanewise(VectorOperators.XOR, t14);
+        LongVector t20 = t11.lanewise(VectorOperators.XOR, t16);
+        LongVector t21 = t17.lanewise(VectorOperators.XOR, y20);
+        LongVector t22 = t18.lanewise(VectorOperators.XOR, y19);
+        LongVector t23 = t19.lanewise(VectorOperators.XOR, y21);
+        LongVector t24 = t20.lanewise(VectorOperators.XOR, y18);
+        LongVector t25 = t21.lanewise(VectorOperators.XOR, t22);
+        LongVector t26 = t21.and(t23);
+        LongVector t27 = t24.lanewise(VectorOperators.XOR, t26);
+        LongVector t28 = t25.and(t27);
+        LongVector t29 = t28.lanewise(VectorOperators.XOR, t22);
+        LongVector t30 = t23.lanewise(VectorOperators.XOR, t24);
+        LongVector t31 = t22.lanewise(VectorOperators.XOR, t26);
+        LongVector t32 = t31.and(t30);
+        LongVector t33 = t32.lanewise(VectorOperators.XOR, t24);
+        LongVector t34 = t23.lanewise(VectorOperators.XOR, t33);
+        LongVector t35 = t27.lanewise(VectorOperators.XOR, t33);
+        LongVector t36 = t24.and(t35);
+        LongVector t37 = t36.lanewise(VectorOperators.XOR, t34);
+        LongVector t38 = t27.lanewise(VectorOperators.XOR, t36);
+        LongVector t39 = t29.and(t38);
+        LongVector t40 = t25.lanewise(VectorOperators.XOR, t39);
+        LongVector t41 = t40.lanewise(VectorOperators.XOR, t37);
+        LongVector t42 = t29.lanewise(VectorOperators.XOR, t33);
+        LongVector t43 = t29.lanewise(VectorOperators.XOR, t40);
+        LongVector t44 = t33.lanewise(VectorOperators.XOR, t37);
+        LongVector t45 = t42.lanewise(VectorOperators.XOR, t41);
+        LongVector z0 = t44.and(y15);
+        LongVector z1 = t37.and(y6);
+        LongVector z2 = t33.and(x7);
+        LongVector z3 = t43.and(y16);
+        LongVector z4 = t40.and(y1);
+        LongVector z5 = t29.and(y7);
+        LongVector z6 = t42.and(y11);
+        LongVector z7 = t45.and(y17);
+        LongVector z8 = t41.and(y10);
+        LongVector z9 = t44.and(y12);
+        LongVector z10 = t37.and(y3);
+        LongVector z11 = t33.and(y4);
+        LongVector z12 = t43.and(y13);
+        LongVector z13 = t40.and(y5);
+        LongVector z14 = t29.and(y2);
+        LongVector z15 = t42.and(y9);
+        LongVector z16 = t45.and(y14);
+        LongVector z17 = t41.and(y8);
+        z0.intoArray(temp, 22 * LANES);
+        z1.intoArray(temp, 23 * LANES);
+        z2.intoArray(temp, 24 * LANES);
+        z3.intoArray(temp, 25 * LANES);
+        z4.intoArray(temp, 26 * LANES);
+        z5.intoArray(temp, 27 * LANES);
+        z6.intoArray(temp, 28 * LANES);
+        z7.intoArray(temp, 29 * LANES);
+        z8.intoArray(temp, 30 * LANES);
+        z9.intoArray(temp, 31 * LANES);
+        z10.intoArray(temp, 32 * LANES);
+        z11.intoArray(temp, 33 * LANES);
+        z12.intoArray(temp, 34 * LANES);
+        z13.intoArray(temp, 35 * LANES);
+        z14.intoArray(temp, 36 * LANES);
+        z15.intoArray(temp, 37 * LANES);
+        z16.intoArray(temp, 38 * LANES);
+        z17.intoArray(temp, 39 * LANES);
+    }
+
+    /** Compute the bottom linear transformation of the S-Box. */
+    private void subBytesBottom() {
+        LongVector z0 = plane(temp, 22);
+        LongVector z1 = plane(temp, 23);
+        LongVector z2 = plane(temp, 24);
+        LongVector z3 = plane(temp, 25);
+        LongVector z4 = plane(temp, 26);
+        LongVector z5 = plane(temp, 27);
+        LongVector z6 = plane(temp, 28);
+        LongVector z7 = plane(temp, 29);
+        LongVector z8 = plane(temp, 30);
+        LongVector z9 = plane(temp, 31);
+        LongVector z10 = plane(temp, 32);
+        LongVector z11 = plane(temp, 33);
+        LongVector z12 = plane(temp, 34);
+        LongVector z13 = plane(temp, 35);
+        LongVector z14 = plane(temp, 36);
+        LongVector z15 = plane(temp, 37);
+        LongVector z16 = plane(temp, 38);
+        LongVector z17 = plane(temp, 39);
+        LongVector t46 = z15.lanewise(VectorOperators.XOR, z16);
+        LongVector t47 = z10.lanewise(VectorOperators.XOR, z11);
+        LongVector t48 = z5.lanewise(VectorOperators.XOR, z13);
+        LongVector t49 = z9.lanewise(VectorOperators.XOR, z10);
+        LongVector t50 = z2.lanewise(VectorOperators.XOR, z12);
+        LongVector t51 = z2.lanewise(VectorOperators.XOR, z5);
+        LongVector t52 = z7.lanewise(VectorOperators.XOR, z8);
+        LongVector t53 = z0.lanewise(VectorOperators.XOR, z3);
+        LongVector t54 = z6.lanewise(VectorOperators.XOR, z7);
+        LongVector t55 = z16.lanewise(VectorOperators.XOR, z17);
+        LongVector t56 = z12.lanewise(VectorOperators.XOR, t48);
+        LongVector t57 = t50.lanewise(VectorOperators.XOR, t53);
+        LongVector t58 = z4.lanewise(VectorOperators.XOR, t46);
+        LongVector t59 = z3.lanewise(VectorOperators.XOR, t54);
+        LongVector t60 = t46.lanewise(VectorOperators.XOR, t57);
+        LongVector t61 = z14.lanewise(VectorOperators.XOR, t57);
+        LongVector t62 = t52.lanewise(VectorOperators.XOR, t58);
+        LongVector t63 = t49.lanewise(VectorOperators.XOR, t58);
+        LongVector t64 = z4.lanewise(VectorOperators.XOR, t59);
+        LongVector t65 = t61.lanewise(VectorOperators.XOR, t62);
+        LongVector t66 = z1.lanewise(VectorOperators.XOR, t63);
+        LongVector s0 = t59.lanewise(VectorOperators.XOR, t63);
+        LongVector s6 = t56.lanewise(VectorOperators.XOR, t62.lanewise(VectorOperators.XOR, -1L));
+        LongVector s7 = t48.lanewise(VectorOperators.XOR, t60.lanewise(VectorOperators.XOR, -1L));
+        LongVector t67 = t64.lanewise(VectorOperators.XOR, t65);
+        LongVector s3 = t53.lanewise(VectorOperators.XOR, t66);
+        LongVector s4 = t51.lanewise(VectorOperators.XOR, t66);
+        LongVector s5 = t47.lanewise(VectorOperators.XOR, t65);
+        LongVector s1 = t64.lanewise(VectorOperators.XOR, s3.lanewise(VectorOperators.XOR, -1L));
+        LongVector s2 = t55.lanewise(VectorOperators.XOR, t67.lanewise(VectorOperators.XOR, -1L));
+        s7.intoArray(state, 0);
+        s6.intoArray(state, LANES);
+        s5.intoArray(state, 2 * LANES);
+        s4.intoArray(state, 3 * LANES);
+        s3.intoArray(state, 4 * LANES);
+        s2.intoArray(state, 5 * LANES);
+        s1.intoArray(state, 6 * LANES);
+        s0.intoArray(state, 7 * LANES);
+    }
+
+    /**
+     * Make InvSubBytes in all lanes. The inverse S-Box is the S-Box between two inverse
+     * affine transformations: the first one gives the inverse of the byte, the S-Box computes
+     * the affine transformation of its inverse, i.e. of the original byte, and the second
+     * one removes the affine transformation.
+     */
+    private void invSubBytes() {
+        invAffine();
+        subBytes();
+        invAffine();
+    }
+
+    /** Make the inverse affine transformation of the S-Box in all lanes. */
+    private void invAffine() {
+        // adding 0x63 inverts the planes 0, 1, 5 and 6
+        LongVector q0 = plane(state, 0).lanewise(VectorOperators.XOR, -1L);
+        LongVector q1 = plane(state, 1).lanewise(VectorOperators.XOR, -1L);
+        LongVector q2 = plane(state, 2);
+        LongVector q3 = plane(state, 3);
+        LongVector q4 = plane(state, 4);
+        LongVector q5 = plane(state, 5).lanewise(VectorOperators.XOR, -1L);
+        LongVector q6 = plane(state, 6).lanewise(VectorOperators.XOR, -1L);
+        LongVector q7 = plane(state, 7);
+        // bit i is the sum of the bits i + 2, i + 5 and i + 7
+        q2.lanewise(VectorOperators.XOR, q5).lanewise(VectorOperators.XOR, q7).intoArray(state, 0);
+        q3.lanewise(VectorOperators.XOR, q6).lanewise(VectorOperators.XOR, q0).intoArray(state, LANES);
+        q4.lanewise(VectorOperators.XOR, q7).lanewise(VectorOperators.XOR, q1).intoArray(state, 2 * LANES);
+        q5.lanewise(VectorOperators.XOR, q0).lanewise(VectorOperators.XOR, q2).intoArray(state, 3 * LANES);
+        q6.lanewise(VectorOperators.XOR, q1).lanewise(VectorOperators.XOR, q3).intoArray(state, 4 * LANES);
+        q7.lanewise(VectorOperators.XOR, q2).lanewise(VectorOperators.XOR, q4).intoArray(state, 5 * LANES);
+        q0.lanewise(VectorOperators.XOR, q3).lanewise(VectorOperators.XOR, q5).intoArray(state, 6 * LANES);
+        q1.lanewise(VectorOperators.XOR, q4).lanewise(VectorOperators.XOR, q6).intoArray(state, 7 * LANES);
+    }
+
+    /**
+     * Make ShiftRows and AddRoundKey in all lanes. The row i of 4 blocks is in the bits
+     * 16 * i to 16 * i + 15 of the plane, the column j in the bits 4 * j to 4 * j + 3 of the row,
+     * row i is rotated left by i columns.
+     *
+     * @param round index of the round key, -1 = no round key
+     */
+    private void shiftRows(int round) {
+        for (int i = 0; i < PLANES; i++) {
+            LongVector x = plane(state, i);
+            x = x.and(0x000000000000FFFFL)
+                    .or(x.and(0x00000000FFF00000L).lanewise(VectorOperators.LSHR, 4))
+                    .or(x.and(0x00000000000F0000L).lanewise(VectorOperators.LSHL, 12))
+                    .or(x.and(0x0000FF0000000000L).lanewise(VectorOperators.LSHR, 8))
+                    .or(x.and(0x000000FF00000000L).lanewise(VectorOperators.LSHL, 8))
+                    .or(x.and(0xF000000000000000L).lanewise(VectorOperators.LSHR, 12))
+                    .or(x.and(0x0FFF000000000000L).lanewise(VectorOperators.LSHL, 4));
+            if (round >= 0)
+                x = x.lanewise(VectorOperators.XOR, roundKeys[round * PLANES + i]);
+            x.intoArray(state, i * LANES);
+        }
+    }
+
+    /** Make InvShiftRows in all lanes, row i is rotated right by i columns. */
+    private void invShiftRows() {
+        for (int i = 0; i < PLANES; i++) {
+            LongVector x = plane(state, i);
+            x.and(0x000000000000FFFFL)
+                    .or(x.and(0x000000000FFF0000L).lanewise(VectorOperators.LSHL, 4))
+                    .or(x.and(0x00000000F0000000L).lanewise(VectorOperators.LSHR, 12))
+                    .or(x.and(0x000000FF00000000L).lanewise(VectorOperators.LSHL, 8))
+                    .or(x.and(0x0000FF0000000000L).lanewise(VectorOperators.LSHR, 8))
+                    .or(x.and(0x000F000000000000L).lanewise(VectorOperators.LSHL, 12))
+                    .or(x.and(0xFFF0000000000000L).lanewise(VectorOperators.LSHR, 4))
+                    .intoArray(state, i * LANES);
+        }
+    }
+
+    /**
+     * Make MixColumns and AddRoundKey in all lanes. Rotation of the plane by 16 bits gives
+     * the next row, by 32 bits the row after it. The plane i of 2 * a[i] + 3 * a[i + 1] is
+     * the plane i - 1 of a[i] + a[i + 1], the plane 7 is reduced into the planes 0, 1, 3 and 4.
+     *
+     * @param round index of the round key, -1 = no round key
+     */
+    private void mixColumns(int round) {
+        LongVector q7 = plane(state, 7);
+        LongVector carry = q7.lanewise(VectorOperators.XOR, rotate16(q7));
+        LongVector previous = LongVector.zero(SPECIES); // plane i - 1 of a[i] + a[i + 1]
+        for (int i = 0; i < PLANES; i++) {
+            LongVector q = plane(state, i);
+            LongVector r = rotate16(q);
+            LongVector sum = q.lanewise(VectorOperators.XOR, r);
+            LongVector x = previous.lanewise(VectorOperators.XOR, r).lanewise(VectorOperators.XOR, rotate32(sum));
+            if ((REDUCTION >>> i & 1) != 0)
+                x = x.lanewise(VectorOperators.XOR, carry);
+            if (round >= 0)
+                x = x.lanewise(VectorOperators.XOR, roundKeys[round * PLANES + i]);
+            x.intoArray(state, i * LANES);
+            previous = sum;
+        }
+    }
+
+    /**
+     * Make InvMixColumns in all lanes. InvMixColumns is MixColumns after adding
+     * x^2 * (a[i] + a[i + 2]) to every row i; the multiplication moves the planes by 2,
+     * the planes 6 and 7 are reduced.
+     */
+    private void invMixColumns() {
+        LongVector q6 = plane(state, 6);
+        LongVector q7 = plane(state, 7);
+        LongVector u6 = q6.lanewise(VectorOperators.XOR, rotate32(q6));
+        LongVector u7 = q7.lanewise(VectorOperators.XOR, rotate32(q7));
+        LongVector before = LongVector.zero(SPECIES); // plane i - 2 of a[i] + a[i + 2]
+        LongVector previous = before; // plane i - 1 of a[i] + a[i + 2]
+        for (int i = 0; i < PLANES; i++) {
+            LongVector q = plane(state, i);
+            LongVector u = q.lanewise(VectorOperators.XOR, rotate32(q));
+            LongVector x = q.lanewise(VectorOperators.XOR, before);
+            if ((REDUCTION >>> i & 1) != 0)
+                x = x.lanewise(VectorOperators.XOR, u6);
+            if ((REDUCTION << 1 >>> i & 1) != 0)
+                x = x.lanewise(VectorOperators.XOR, u7);
+            x.intoArray(state, i * LANES);
+            before = previous;
+            previous = u;
+        }
+        mixColumns(-1);
+    }
+
+    /**
+     * Load a plane of all lanes.
+     *
+     * @param planes the state or the temporary planes
+     * @param i index of the plane
+     * @return plane of all lanes
+     */
+    private static LongVector plane(long[] planes, int i) {
+        return LongVector.fromArray(SPECIES, planes, i * LANES);
+    }
+
+    private static LongVector rotate16(LongVector x) {
+        return x.lanewise(VectorOperators.ROR, 16);
+    }
+
+    private static LongVector rotate32(LongVector x) {
+        return x.lanewise(VectorOperators.ROR, 32);
+    }
+
+    /**
+     * Pack {@link #BLOCKS} datablocks at the position of the buffer into the bitsliced state.
+     *
+     * @param in source buffer
+     */
+    private void load(ByteBuffer in) {
+        int position = in.position();
+        boolean swap = in.order() != ByteOrder.LITTLE_ENDIAN;
+        for (int lane = 0; lane < LANES; lane++) {
+            for (int block = 0; block < COLUMN_SIZE; block++, position += SIZE) {
+                int w0 = in.getInt(position);
+                int w1 = in.getInt(position + 4);
+                int w2 = in.getInt(position + 8);
+                int w3 = in.getInt(position + 12);
+                if (swap) {
+                    w0 = Integer.reverseBytes(w0);
+                    w1 = Integer.reverseBytes(w1);
+                    w2 = Integer.reverseBytes(w2);
+                    w3 = Integer.reverseBytes(w3);
+                }
+                state[block * LANES + lane] = Bitslice.interleave(w0, w2);
+                state[(block + COLUMN_SIZE) * LANES + lane] = Bitslice.interleave(w1, w3);
+            }
+            Bitslice.orthogonalize(state, lane, LANES);
+        }
+        in.position(position);
+    }
+
+    /**
+     * Unpack the bitsliced state into {@link #BLOCKS} datablocks at the position of the buffer.
+     *
+     * @param out destination buffer
+     */
+    private void store(ByteBuffer out) {
+        int position = out.position();
+        boolean swap = out.order() != ByteOrder.LITTLE_ENDIAN;
+        for (int lane = 0; lane < LANES; lane++) {
+            Bitslice.orthogonalize(state, lane, LANES);
+            for (int block = 0; block < COLUMN_SIZE; block++, position += SIZE) {
+                long even = state[block * LANES + lane];
+                long odd = state[(block + COLUMN_SIZE) * LANES + lane];
+                int w0 = Bitslice.deinterleave(even);
+                int w1 = Bitslice.deinterleave(odd);
+                int w2 = Bitslice.deinterleave(even >>> 8);
+                int w3 = Bitslice.deinterleave(odd >>> 8);
+                if (swap) {
+                    w0 = Integer.reverseBytes(w0);
+                    w1 = Integer.reverseBytes(w1);
+                    w2 = Integer.reverseBytes(w2);
+                    w3 = Integer.reverseBytes(w3);
+                }
+                out.putInt(position, w0);
+                out.putInt(position + 4, w1);
+                out.putInt(position + 8, w2);
+                out.putInt(position + 12, w3);
+            }
+        }
+        out.position(position);
+    }
+}
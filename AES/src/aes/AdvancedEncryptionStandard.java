@@ -1,20 +1,22 @@
+package aes;
+
+import java.nio.ByteBuffer;
+
 /**
  * The {@code AdvancedEncryptionStandard} class provides all operations
- * for encryption/decryption of AES cipher. {@link #encrypt(int[])} enrypt
- * a data block, {@link #decrypt(int[])} decrypt a data block.
+ * for encryption/decryption of AES cipher. {@link #encryptBlock(byte[], int, byte[], int)}
+ * enrypt a data block, {@link #decryptBlock(byte[], int, byte[], int)} decrypt a data block.
  */
-public class AdvancedEncryptionStandard {
+public class AdvancedEncryptionStandard implements BlockCipher {
     private static final int SIZE = 16; // size of the key/datablock
     private static final int COLUMN_SIZE = 4; // size of the column/row
-    private static final int TWENTY_SEVEN = 27;
     private static final int BIT_MASK = 255; // mask to create 8bit integer
     private static final int LOWER_MASK = 15; // take only right half of the byte, mask: 00001111
-    private static final int KEY_COUNT = 10; // count of expansion keys
 
     /** Constants for each iteration in excapnsion key, */
-    private static final int[] RCON = new int[] {0x01, 0x02, 0x04, 0x08, 0x10, 0x20, 0x40, 0x80, 0x1b, 0x36, 0x6c};
+    static final int[] RCON = new int[] {0x01, 0x02, 0x04, 0x08, 0x10, 0x20, 0x40, 0x80, 0x1b, 0x36, 0x6c};
     /** S-Box for encryption */
-    private static final int[][] SBOX_ENCRYPTION = new int[][] {
+    static final int[][] SBOX_ENCRYPTION = new int[][] {
             {0x63, 0x7c, 0x77, 0x7b, 0xf2, 0x6b, 0x6f, 0xc5, 0x30, 0x1, 0x67, 0x2b, 0xfe, 0xd7, 0xab, 0x76},
             {0xca, 0x82, 0xc9, 0x7d, 0xfa, 0x59, 0x47, 0xf0, 0xad, 0xd4, 0xa2, 0xaf, 0x9c, 0xa4, 0x72, 0xc0},
             {0xb7, 0xfd, 0x93, 0x26, 0x36, 0x3f, 0xf7, 0xcc, 0x34, 0xa5, 0xe5, 0xf1, 0x71, 0xd8, 0x31, 0x15},
@@ -33,7 +35,7 @@ public class AdvancedEncryptionStandard {
             {0x8c, 0xa1, 0x89, 0x0d, 0xbf, 0xe6, 0x42, 0x68, 0x41, 0x99, 0x2d, 0x0f, 0xb0, 0x54, 0xbb, 0x16}
     };
     /** S-Box for decryption */
-    private static final int[][] SBOX_DECRYPTION = new int[][] {
+    static final int[][] SBOX_DECRYPTION = new int[][] {
             {0x52, 0x9, 0x6a, 0xd5, 0x30, 0x36, 0xa5, 0x38, 0xbf, 0x40, 0xa3, 0x9e, 0x81, 0xf3, 0xd7, 0xfb},
             {0x7c, 0xe3, 0x39, 0x82, 0x9b, 0x2f, 0xff, 0x87, 0x34, 0x8e, 0x43, 0x44, 0xc4, 0xde, 0xe9, 0xcb},
             {0x54, 0x7b, 0x94, 0x32, 0xa6, 0xc2, 0x23, 0x3d, 0xee, 0x4c, 0x95, 0x0b, 0x42, 0xfa, 0xc3, 0x4e},
@@ -52,8 +54,8 @@ public class AdvancedEncryptionStandard {
             {0x17, 0x2b, 0x4, 0x7e, 0xba, 0x77, 0xd6, 0x26, 0xe1, 0x69, 0x14, 0x63, 0x55, 0x21, 0x0c, 0x7d}
     };
 
-    private int[][] keys = new int[11][16]; // 11 keys for single iteration
-    private int[] data; // encryption/decryption datablock
+    private final int[][] keys; // keys for single iteration, count of rounds + 1
+    private final int[] data = new int[SIZE]; // encryption/decryption datablock, reused between calls
     private int currentKey; // index of the key which is currently using
     private int[][] sbox; // using S-Box
 
@@ -63,17 +65,66 @@ public class AdvancedEncryptionStandard {
      * @param key initial key
      */
     public AdvancedEncryptionStandard(String key) {
-        generateKeys(key);
+        this(ExpandedKey.of(key));
     }
 
     /**
-     * Encrypt plaintext.
+     * Create an instance of AES using already expanded key. Creation is cheap,
+     * so every thread can have its own instance sharing the expanded key.
      *
-     * @param datablock 16 bytes plaintext which is encrypt
-     * @return  encrypted data block in hexadecimal form
+     * @param key expanded key
      */
-    public String encrypt(int[] datablock) {
-        this.data = datablock;
+    public AdvancedEncryptionStandard(ExpandedKey key) {
+        keys = new int[key.getRounds() + 1][SIZE];
+        loadKeys(key);
+    }
+
+    @Override
+    public void encryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        for (int i = 0; i < SIZE; i++) {
+            data[i] = in[inOff + i] & BIT_MASK;
+        }
+        encrypt();
+        for (int i = 0; i < SIZE; i++) {
+            out[outOff + i] = (byte)data[i];
+        }
+    }
+
+    @Override
+    public void decryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        for (int i = 0; i < SIZE; i++) {
+            data[i] = in[inOff + i] & BIT_MASK;
+        }
+        decrypt();
+        for (int i = 0; i < SIZE; i++) {
+            out[outOff + i] = (byte)data[i];
+        }
+    }
+
+    @Override
+    public void encryptBlock(ByteBuffer in, ByteBuffer out) {
+        for (int i = 0; i < SIZE; i++) {
+            data[i] = in.get() & BIT_MASK;
+        }
+        encrypt();
+        for (int i = 0; i < SIZE; i++) {
+            out.put((byte)data[i]);
+        }
+    }
+
+    @Override
+    public void decryptBlock(ByteBuffer in, ByteBuffer out) {
+        for (int i = 0; i < SIZE; i++) {
+            data[i] = in.get() & BIT_MASK;
+        }
+        decrypt();
+        for (int i = 0; i < SIZE; i++) {
+            out.put((byte)data[i]);
+        }
+    }
+
+    /** Encrypt the datablock in place. */
+    private void encrypt() {
         this.sbox = SBOX_ENCRYPTION;
         this.currentKey = 0;
 
@@ -82,7 +133,7 @@ public class AdvancedEncryptionStandard {
         currentKey++;
 
         // Main rounds
-        for (int i = 0; i < 9; i++) {
+        for (int i = 1; i < keys.length - 1; i++) {
             subBytes();
             shiftRowsLeft();
             mixColumnsEncryption();
@@ -94,25 +145,12 @@ public class AdvancedEncryptionStandard {
         subBytes();
         shiftRowsLeft();
         addRoundKey();
-
-        // Convert result into hexadecimal form
-        String result = "";
-        for (int i = 0; i < SIZE; i++) {
-            result += String.format("%02x ", data[i]);
-        }
-        return result;
     }
 
-    /**
-     * Decrypt ciphertext.
-     *
-     * @param datablock 16 bytes ciphertext which is decrypt
-     * @return array of decrypted bytes
-     */
-    public byte[] decrypt(int[] datablock) {
-        this.data = datablock;
+    /** Decrypt the datablock in place. */
+    private void decrypt() {
         this.sbox = SBOX_DECRYPTION;
-        this.currentKey = 10;
+        this.currentKey = keys.length - 1;
 
         // Inverse final round
         addRoundKey();
@@ -121,7 +159,7 @@ public class AdvancedEncryptionStandard {
         subBytes();
 
         // Inverse main rounds
-        for (int i = 0; i < 9; i++) {
+        for (int i = 1; i < keys.length - 1; i++) {
             addRoundKey();
             currentKey--;
             mixColumnsDecryption();
@@ -130,13 +168,6 @@ public class AdvancedEncryptionStandard {
         }
 
         addRoundKey();
-
-        // Convert result into array of bytes
-        byte[] bytes = new byte[16];
-        for (int i = 0; i < SIZE; i++) {
-            bytes[i] = (byte)data[i];
-        }
-        return bytes;
     }
 
     /** Every byte in datablock is XORed with corresponding
@@ -227,151 +258,59 @@ public class AdvancedEncryptionStandard {
      *  [3 1 1 2]
      */
     private void mixColumnsEncryption() {
-        int[] newMatrix = new int[SIZE];
-        int[] x2 = new int[SIZE]; // all bytes multiply by 2
-        int[] x3 = new int[SIZE]; // all bytes multiply by 3
-        int a;  // temporary value
-
-        // multiply all bytes in matrix (datablock) by 2 and 3 in Galois Field 2^8
-        for (int i = 0; i < SIZE; i++) {
-            // multiply by 2
-            a = data[i] << 1;   // shift left
-            if (data[i] > 127) {  // if original 8. bit was 1, then xor with 00011001 (27)
-                a &= BIT_MASK;  // mask rest of the integer, need only 8bits
-                a ^= TWENTY_SEVEN;
-            }
-            x2[i] = a;
-            // multiply by 3
-            x3[i] = x2[i] ^ data[i];
-        }
+        int a0, a1, a2, a3; // bytes of the column
+        int x0, x1, x2, x3; // bytes of the column multiply by 2
 
-        for (int i = 0; i < SIZE; i++) {
-            switch (i % COLUMN_SIZE) {  // get corresponding row and use appropriate form
-                case 0:
-                    newMatrix[i] = x2[i] ^ x3[i+1] ^ data[i+2] ^ data[i+3];
-                    break;
-                case 1:
-                    newMatrix[i] = data[i-1] ^ x2[i] ^ x3[i+1] ^ data[i+2];
-                    break;
-                case 2:
-                    newMatrix[i] = data[i-2] ^ data[i-1] ^ x2[i] ^ x3[i+1];
-                    break;
-                case 3:
-                    newMatrix[i] = x3[i-3] ^ data[i-2] ^ data[i-1] ^ x2[i];
-                    break;
-            }
+        for (int i = 0; i < SIZE; i += COLUMN_SIZE) {
+            a0 = data[i];
+            a1 = data[i+1];
+            a2 = data[i+2];
+            a3 = data[i+3];
+            x0 = GaloisField.MUL2[a0];
+            x1 = GaloisField.MUL2[a1];
+            x2 = GaloisField.MUL2[a2];
+            x3 = GaloisField.MUL2[a3];
+            // multiply by 3 is multiply by 2 XOR original byte
+            data[i]   = x0 ^ (x1 ^ a1) ^ a2 ^ a3;
+            data[i+1] = a0 ^ x1 ^ (x2 ^ a2) ^ a3;
+            data[i+2] = a0 ^ a1 ^ x2 ^ (x3 ^ a3);
+            data[i+3] = (x0 ^ a0) ^ a1 ^ a2 ^ x3;
         }
-        data = newMatrix;
     }
 
     /**
      * Make a matrices multiplication in GF(2^8)
      * with a defined matrix for decryption.
-     *  [12 11 13  9]
+     *  [14 11 13  9]
      *  [ 9 14 11 13]
      *  [13  9 14 11]
      *  [11 13  9 14]
      */
     private void mixColumnsDecryption() {
-        int[] newMatrix = new int[SIZE];
-        int[] x9 = new int[SIZE];  // all bytes multiply by 9
-        int[] x11 = new int[SIZE]; // all bytes multiply by 11
-        int[] x13 = new int[SIZE]; // all bytes multiply by 13
-        int[] x14 = new int[SIZE]; // all bytes multiply by 14
+        int a0, a1, a2, a3; // bytes of the column
 
-        // multiply all bytes in matrix by 9, 11, 13 and 14 in Galois Field 2^8
-        for (int i = 0; i < SIZE; i++) {
-            x9[i] = GFmultiply(9, data[i]);
-            x11[i] = GFmultiply(11, data[i]);
-            x13[i] = GFmultiply(13, data[i]);
-            x14[i] = GFmultiply(14, data[i]);
+        for (int i = 0; i < SIZE; i += COLUMN_SIZE) {
+            a0 = data[i];
+            a1 = data[i+1];
+            a2 = data[i+2];
+            a3 = data[i+3];
+            data[i]   = GaloisField.MUL14[a0] ^ GaloisField.MUL11[a1] ^ GaloisField.MUL13[a2] ^ GaloisField.MUL9[a3];
+            data[i+1] = GaloisField.MUL9[a0] ^ GaloisField.MUL14[a1] ^ GaloisField.MUL11[a2] ^ GaloisField.MUL13[a3];
+            data[i+2] = GaloisField.MUL13[a0] ^ GaloisField.MUL9[a1] ^ GaloisField.MUL14[a2] ^ GaloisField.MUL11[a3];
+            data[i+3] = GaloisField.MUL11[a0] ^ GaloisField.MUL13[a1] ^ GaloisField.MUL9[a2] ^ GaloisField.MUL14[a3];
         }
-
-        for (int i = 0; i < SIZE; i++) {
-            switch (i % COLUMN_SIZE) { // get corresponding row and use appropriate form
-                case 0:
-                    newMatrix[i] = x14[i] ^ x11[i+1] ^ x13[i+2] ^ x9[i+3];
-                    break;
-                case 1:
-                    newMatrix[i] = x9[i-1] ^ x14[i] ^ x11[i+1] ^ x13[i+2];
-                    break;
-                case 2:
-                    newMatrix[i] = x13[i-2] ^ x9[i-1] ^ x14[i] ^ x11[i+1];
-                    break;
-                case 3:
-                    newMatrix[i] = x11[i-3] ^ x13[i-2] ^ x9[i-1] ^ x14[i];
-                    break;
-            }
-        }
-        data = newMatrix;
-    }
-
-    /**
-     * Multiplicate two values in Galois Field 2^8.
-     * Using Russian peasant multiplication algorithm.
-     *
-     * @param a first value
-     * @param b second value
-     * @return result of multiplication
-     */
-    private int GFmultiply(int a, int b) {
-        int p = 0;  // product of the multiplication
-        while ((a != 0) && (b != 0)) {  // if a or b is 0, then stop iteration
-            if ((b & 1) == 1) // if b is odd, then add a to p (addition in GF(2^m) is xor)
-                p ^= a;  // add a to p, but addition in GF(2^m) is XOR
-            if (a > 127)    // if a > 127 then reduce wiht polynomial x^8 + x^4 + x^3 + x + 1
-                a = (a << 1) ^ 0b100011011;
-            else
-                a <<= 1;
-            b >>= 1;
-        }
-        return p;
     }
 
     /**
-     * Key expansion of all keys.
+     * Split words of the expanded key into bytes of all keys.
      *
-     * @param key the initial key
+     * @param key the expanded key
      */
-    private void generateKeys(String key) {
-        int[] lastColumn = new int[COLUMN_SIZE];
-
-        // Save an initial key
-        for (int i = 0; i < key.length(); i++) {
-            keys[0][i] = key.charAt(i);
-        }
-
-        int tmp, row, column;
-        for (int i = 1; i <= KEY_COUNT; i++) {  // generate all other keys
-            // Shift left the last column of the previous key
-            tmp = keys[i-1][12];
-            lastColumn[0] = keys[i-1][13];
-            lastColumn[1] = keys[i-1][14];
-            lastColumn[2] = keys[i-1][15];
-            lastColumn[3] = tmp;
-
-            // Substitution of the last column
-            for (int j = 0; j < COLUMN_SIZE; j++) {
-                column = lastColumn[j] & LOWER_MASK; // use mask to get only right 4bits of the byte
-                row = lastColumn[j] >> 4; // shift 4 right to get only left 4bits of the byte
-                lastColumn[j] = SBOX_ENCRYPTION[row][column];
-            }
-
-            // XOR of the round constant for the current iteration and the leftmost byte of the last column
-            lastColumn[0] ^= RCON[i-1];
-
-            // XOR with the first column of the previous key (creating a first column of the next key)
-            keys[i][0]  = keys[i-1][0] ^ lastColumn[0];
-            keys[i][1]  = keys[i-1][1] ^ lastColumn[1];
-            keys[i][2]  = keys[i-1][2] ^ lastColumn[2];
-            keys[i][3]  = keys[i-1][3] ^ lastColumn[3];
-
-            /* XOR with other columns, (new column) XOR (previous next column), i.e.
-               second new column = first new column XOR second old column
-               third new column = second new column XOR third old column
-               fourth new column = third new column XOR fourth old column */
-            for (int j = 4; j < 16; j++) {
-                keys[i][j] = keys[i-1][j] ^ keys[i][j - COLUMN_SIZE];
+    private void loadKeys(ExpandedKey key) {
+        int[] words = key.encryptionKey();
+        for (int i = 0; i < keys.length; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                keys[i][j] = (words[COLUMN_SIZE * i + j / COLUMN_SIZE] >>> (24 - 8 * (j % COLUMN_SIZE))) & BIT_MASK;
             }
         }
     }
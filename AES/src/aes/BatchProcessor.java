@@ -0,0 +1,312 @@
+package aes;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The {@code BatchProcessor} class encrypts/decrypts many files in the binary
+ * format in one process, so the start of the JVM and the warm-up of the cipher
+ * are paid only once. Inputs are files and directory trees, the files are
+ * processed concurrently by a bounded pool of workers and the outputs keep the
+ * relative paths inside the output directory. Inputs which would have the same
+ * output file (e.g. {@code a/f} and {@code b/f}) are not processed and fail.
+ */
+public class BatchProcessor {
+    /** Suffix of the ciphertext files. */
+    public static final String SUFFIX = ".aes";
+    /** Suffix of the decrypted files whose names do not end with {@link #SUFFIX}. */
+    public static final String DECRYPTED_SUFFIX = ".out";
+
+    private static final int WARM_UP_BLOCKS = 4096;   // blocks encrypted/decrypted in one round of the warm-up
+    private static final int WARM_UP_ROUNDS = 32;     // enough invocations for the JIT compiler
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double BYTES_PER_MEGABYTE = 1 << 20;
+
+    private final Function<CipherMode, FileProcessor> processors; // creates a processor for a file
+    private final int workers;
+
+    /**
+     * Create a batch processor.
+     *
+     * @param processors creates a processor of a file for the mode of operation,
+     *                   called concurrently by the workers
+     * @param workers count of files processed at the same time
+     */
+    public BatchProcessor(Function<CipherMode, FileProcessor> processors, int workers) {
+        this.processors = processors;
+        this.workers = workers;
+    }
+
+    /**
+     * Run the cipher on a buffer in memory, so the hot code is compiled
+     * before the first file and the timings of the files are comparable.
+     *
+     * @param cipher block cipher
+     */
+    public static void warmUp(BlockCipher cipher) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WARM_UP_BLOCKS * BlockCipher.BLOCK_SIZE);
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            buffer.clear();
+            cipher.encryptBlocks(buffer, buffer.duplicate(), WARM_UP_BLOCKS);
+            buffer.clear();
+            cipher.decryptBlocks(buffer, buffer.duplicate(), WARM_UP_BLOCKS);
+        }
+    }
+
+    /**
+     * Encrypt all files. Ciphertext files have the {@link #SUFFIX}.
+     *
+     * @param inputs files and directories
+     * @param output output directory
+     * @param mode mode of operation
+     * @return results of all files in the order of the inputs
+     * @throws IOException exception during listing of the directories
+     */
+    public List<Result> encrypt(List<Path> inputs, Path output, CipherMode mode) throws IOException {
+        return run(inputs, output, true, mode);
+    }
+
+    /**
+     * Decrypt all files, mode of operation is taken from the header of each file.
+     * The {@link #SUFFIX} is removed from the names of the files. The output file
+     * of a failed decryption is deleted.
+     *
+     * @param inputs files and directories
+     * @param output output directory
+     * @return results of all files in the order of the inputs
+     * @throws IOException exception during listing of the directories
+     */
+    public List<Result> decrypt(List<Path> inputs, Path output) throws IOException {
+        return run(inputs, output, false, null);
+    }
+
+    /**
+     * Print timings of all files and the totals.
+     *
+     * @param results results of the files
+     * @param nanos wall time of the whole batch in nanoseconds
+     * @param out output stream for the report
+     */
+    public static void report(List<Result> results, long nanos, PrintStream out) {
+        long bytes = 0;
+        int failed = 0;
+        for (Result result : results) {
+            if (result.isSuccessful()) {
+                bytes += result.getBytes();
+                out.printf("%-6s %10.1f ms %10.1f MB/s %14d B  %s%n", "OK", result.getNanos() / 1e6,
+                        throughput(result.getBytes(), result.getNanos()), result.getBytes(), result.getSource());
+            }
+            else {
+                failed++;
+                out.printf("%-6s %10.1f ms %27s  %s: %s%n", "FAILED", result.getNanos() / 1e6, "",
+                        result.getSource(), describe(result.getError()));
+            }
+        }
+        out.printf("Total: %d files, %d failed, %d bytes in %.1f ms, %.1f MB/s%n", results.size(), failed,
+                bytes, nanos / 1e6, throughput(bytes, nanos));
+    }
+
+    /**
+     * Process all files on the pool of the workers.
+     *
+     * @param inputs files and directories
+     * @param output output directory
+     * @param encryption true = encryption, false = decryption
+     * @param mode mode of operation for encryption
+     * @return results of all files in the order of the inputs
+     * @throws IOException exception during listing of the directories
+     */
+    private List<Result> run(List<Path> inputs, Path output, boolean encryption, CipherMode mode) throws IOException {
+        List<Path[]> files = new ArrayList<>(); // pairs of the source and the target
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                List<Path> tree;
+                try (Stream<Path> stream = Files.walk(input)) {
+                    tree = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : tree) {
+                    files.add(new Path[] { file, target(output, input.relativize(file), encryption) });
+                }
+            }
+            else
+                files.add(new Path[] { input, target(output, input.getFileName(), encryption) });
+        }
+        Map<Path, Integer> targets = new HashMap<>(); // output file -> count of its inputs
+        for (Path[] file : files) {
+            targets.merge(file[1].toAbsolutePath().normalize(), 1, Integer::sum);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            AtomicInteger waiting = new AtomicInteger(files.size()); // files which were not started yet
+            for (Path[] file : files) {
+                if (targets.get(file[1].toAbsolutePath().normalize()) > 1) {
+                    waiting.decrementAndGet();
+                    IOException error = new IOException("Output file " + file[1] + " has more inputs.");
+                    futures.add(CompletableFuture.completedFuture(new Result(file[0], file[1], 0, 0, error)));
+                    continue;
+                }
+                futures.add(executor.submit(() -> {
+                    CipherMetrics.queued(waiting.decrementAndGet());
+                    return process(file[0], file[1], encryption, mode);
+                }));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                }
+                catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Batch was interrupted.", e);
+                }
+            }
+            return results;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Encrypt/decrypt one file, the exceptions are kept in the result.
+     *
+     * @param source input file
+     * @param target output file
+     * @param encryption true = encryption, false = decryption
+     * @param mode mode of operation for encryption
+     * @return result of the file
+     */
+    private Result process(Path source, Path target, boolean encryption, CipherMode mode) {
+        long start = System.nanoTime();
+        try {
+            long bytes = Files.size(source);
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+            if (encryption)
+                processors.apply(mode).encrypt(source, target);
+            else {
+                CipherFileHeader header;
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(source))) {
+                    header = CipherFileHeader.read(in);
+                }
+                try {
+                    processors.apply(header.getMode()).decrypt(source, target);
+                }
+                catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(target); // never leave a part of the plaintext
+                    throw e;
+                }
+            }
+            return new Result(source, target, bytes, System.nanoTime() - start, null);
+        }
+        catch (IOException | RuntimeException e) {
+            return new Result(source, target, 0, System.nanoTime() - start, e);
+        }
+    }
+
+    /**
+     * Get the output file for the input file.
+     *
+     * @param output output directory
+     * @param relative path of the input file relative to the input directory
+     * @param encryption true = encryption, false = decryption
+     * @return output file
+     */
+    private static Path target(Path output, Path relative, boolean encryption) {
+        String name = relative.getFileName().toString();
+        if (encryption)
+            name += SUFFIX;
+        else if (name.endsWith(SUFFIX) && name.length() > SUFFIX.length())
+            name = name.substring(0, name.length() - SUFFIX.length());
+        else
+            name += DECRYPTED_SUFFIX;
+        return output.resolve(relative).resolveSibling(name);
+    }
+
+    /**
+     * Describe the error of a file, some exceptions (e.g. end of file) have no message.
+     *
+     * @param error the error
+     * @return message of the error or name of its class
+     */
+    private static String describe(Exception error) {
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    /**
+     * Compute throughput.
+     *
+     * @param bytes count of bytes
+     * @param nanos time in nanoseconds
+     * @return megabytes per second
+     */
+    private static double throughput(long bytes, long nanos) {
+        return nanos == 0 ? 0 : bytes / BYTES_PER_MEGABYTE / (nanos / NANOS_PER_SECOND);
+    }
+
+    /**
+     * The {@code Result} class holds the outcome of one file of the batch.
+     */
+    public static final class Result {
+        private final Path source;
+        private final Path target;
+        private final long bytes;     // size of the input file
+        private final long nanos;     // time of the processing
+        private final Exception error; // null if the file was processed successfully
+
+        Result(Path source, Path target, long bytes, long nanos, Exception error) {
+            this.source = source;
+            this.target = target;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        public Path getTarget() {
+            return target;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isSuccessful() {
+            return error == null;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package aes;
+
+/**
+ * The {@code Bitslice} class holds the bitsliced representation of AES shared by
+ * the engines without table lookups. The state of 4 blocks is kept in 8 words of
+ * 64 bits, the word i holds the bit i of all 64 bytes: the row r of the block b
+ * in the column c is the bit {@code 16 * r + 4 * c + b}. The S-Box is the Boolean
+ * circuit of Boyar and Peralta (113 gates), so no memory access and no branch
+ * depends on the data or the key.
+ */
+final class Bitslice {
+    /** Count of bit planes of the state. */
+    static final int PLANES = 8;
+    private static final int COLUMN_SIZE = 4; // size of the column/row
+
+    private Bitslice() {
+    }
+
+    /**
+     * Bitslice the round keys like a state with the same key in all 4 blocks.
+     *
+     * @param key expanded key
+     * @return 8 words for each round key
+     */
+    static long[] roundKeys(ExpandedKey key) {
+        int[] rk = key.encryptionKey();
+        int rounds = key.getRounds();
+        long[] keys = new long[PLANES * (rounds + 1)];
+        for (int round = 0; round <= rounds; round++) {
+            int k = round * COLUMN_SIZE;
+            long even = interleave(Integer.reverseBytes(rk[k]), Integer.reverseBytes(rk[k + 2]));
+            long odd = interleave(Integer.reverseBytes(rk[k + 1]), Integer.reverseBytes(rk[k + 3]));
+            int plane = round * PLANES;
+            for (int i = 0; i < COLUMN_SIZE; i++) {
+                keys[plane + i] = even;
+                keys[plane + COLUMN_SIZE + i] = odd;
+            }
+            orthogonalize(keys, plane, 1);
+        }
+        return keys;
+    }
+
+    /**
+     * Interleave the bytes of two little-endian words of a block, the bytes of the first word
+     * go to the even bytes of the result. Words 0 and 2 of the block b go to the word b
+     * of the state, words 1 and 3 to the word b + 4, before {@link #orthogonalize}.
+     *
+     * @param a first word
+     * @param b second word
+     * @return interleaved word
+     */
+    static long interleave(int a, int b) {
+        return spread(a) | (spread(b) << 8);
+    }
+
+    /**
+     * Collect the even bytes of a long into a word, inverse of {@link #interleave(int, int)}.
+     *
+     * @param x the long, shifted right by 8 bits for the second word
+     * @return collected word
+     */
+    static int deinterleave(long x) {
+        x &= 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        return (int)x | (int)(x >>> 16);
+    }
+
+    /**
+     * Spread the bytes of a word to the even bytes of a long.
+     *
+     * @param w the word
+     * @return spread bytes
+     */
+    private static long spread(int w) {
+        long x = w & 0xFFFFFFFFL;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        return (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+    }
+
+    /**
+     * Transpose 8 interleaved words of 4 blocks into 8 bit planes, bit i of every byte goes
+     * to the plane i. The transposition is an involution, so it also converts the planes back.
+     *
+     * @param q array with the words
+     * @param off index of the first word
+     * @param stride distance between the words
+     */
+    static void orthogonalize(long[] q, int off, int stride) {
+        for (int i = 0; i < PLANES; i += 2) {
+            swap(q, off + i * stride, off + (i + 1) * stride, 0x5555555555555555L, 1);
+        }
+        for (int i = 0; i < PLANES; i += 4) {
+            swap(q, off + i * stride, off + (i + 2) * stride, 0x3333333333333333L, 2);
+            swap(q, off + (i + 1) * stride, off + (i + 3) * stride, 0x3333333333333333L, 2);
+        }
+        for (int i = 0; i < COLUMN_SIZE; i++) {
+            swap(q, off + i * stride, off + (i + 4) * stride, 0x0F0F0F0F0F0F0F0FL, 4);
+        }
+    }
+
+    /**
+     * Swap the bits of two words: the high bits of the first word are exchanged
+     * with the low bits of the second word.
+     *
+     * @param q array with the words
+     * @param i index of the first word
+     * @param j index of the second word
+     * @param low mask of the low bits
+     * @param shift distance of the low and high bits
+     */
+    private static void swap(long[] q, int i, int j, long low, int shift) {
+        long a = q[i];
+        long b = q[j];
+        q[i] = (a & low) | ((b & low) << shift);
+        q[j] = ((a >>> shift) & low) | (b & ~low);
+    }
+
+    /**
+     * Substitute all 64 bytes of the bit planes by the S-Box, x0 is the highest bit.
+     *
+     * @param q 8 bit planes
+     */
+    static void subBytes(long[] q) {
+        long x0 = q[7];
+        long x1 = q[6];
+        long x2 = q[5];
+        long x3 = q[4];
+        long x4 = q[3];
+        long x5 = q[2];
+        long x6 = q[1];
+        long x7 = q[0];
+
+        // top linear transformation
+        long y14 = x3 ^ x5;
+        long y13 = x0 ^ x6;
+        long y9 = x0 ^ x3;
+        long y8 = x0 ^ x5;
+        long t0 = x1 ^ x2;
+        long y1 = t0 ^ x7;
+        long y4 = y1 ^ x3;
+        long y12 = y13 ^ y14;
+        long y2 = y1 ^ x0;
+        long y5 = y1 ^ x6;
+        long y3 = y5 ^ y8;
+        long t1 = x4 ^ y12;
+        long y15 = t1 ^ x5;
+        long y20 = t1 ^ x1;
+        long y6 = y15 ^ x7;
+        long y10 = y15 ^ t0;
+        long y11 = y20 ^ y9;
+        long y7 = x7 ^ y11;
+        long y17 = y10 ^ y11;
+        long y19 = y10 ^ y8;
+        long y16 = t0 ^ y11;
+        long y21 = y13 ^ y16;
+        long y18 = x0 ^ y16;
+
+        // non-linear section
+        long t2 = y12 & y15;
+        long t3 = y3 & y6;
+        long t4 = t3 ^ t2;
+        long t5 = y4 & x7;
+        long t6 = t5 ^ t2;
+        long t7 = y13 & y16;
+        long t8 = y5 & y1;
+        long t9 = t8 ^ t7;
+        long t10 = y2 & y7;
+        long t11 = t10 ^ t7;
+        long t12 = y9 & y11;
+        long t13 = y14 & y17;
+        long t14 = t13 ^ t12;
+        long t15 = y8 & y10;
+        long t16 = t15 ^ t12;
+        long t17 = t4 ^ t14;
+        long t18 = t6 ^ t16;
+        long t19 = t9 ^ t14;
+        long t20 = t11 ^ t16;
+        long t21 = t17 ^ y20;
+        long t22 = t18 ^ y19;
+        long t23 = t19 ^ y21;
+        long t24 = t20 ^ y18;
+        long t25 = t21 ^ t22;
+        long t26 = t21 & t23;
+        long t27 = t24 ^ t26;
+        long t28 = t25 & t27;
+        long t29 = t28 ^ t22;
+        long t30 = t23 ^ t24;
+        long t31 = t22 ^ t26;
+        long t32 = t31 & t30;
+        long t33 = t32 ^ t24;
+        long t34 = t23 ^ t33;
+        long t35 = t27 ^ t33;
+        long t36 = t24 & t35;
+        long t37 = t36 ^ t34;
+        long t38 = t27 ^ t36;
+        long t39 = t29 & t38;
+        long t40 = t25 ^ t39;
+        long t41 = t40 ^ t37;
+        long t42 = t29 ^ t33;
+        long t43 = t29 ^ t40;
+        long t44 = t33 ^ t37;
+        long t45 = t42 ^ t41;
+        long z0 = t44 & y15;
+        long z1 = t37 & y6;
+        long z2 = t33 & x7;
+        long z3 = t43 & y16;
+        long z4 = t40 & y1;
+        long z5 = t29 & y7;
+        long z6 = t42 & y11;
+        long z7 = t45 & y17;
+        long z8 = t41 & y10;
+        long z9 = t44 & y12;
+        long z10 = t37 & y3;
+        long z11 = t33 & y4;
+        long z12 = t43 & y13;
+        long z13 = t40 & y5;
+        long z14 = t29 & y2;
+        long z15 = t42 & y9;
+        long z16 = t45 & y14;
+        long z17 = t41 & y8;
+
+        // bottom linear transformation
+        long t46 = z15 ^ z16;
+        long t47 = z10 ^ z11;
+        long t48 = z5 ^ z13;
+        long t49 = z9 ^ z10;
+        long t50 = z2 ^ z12;
+        long t51 = z2 ^ z5;
+        long t52 = z7 ^ z8;
+        long t53 = z0 ^ z3;
+        long t54 = z6 ^ z7;
+        long t55 = z16 ^ z17;
+        long t56 = z12 ^ t48;
+        long t57 = t50 ^ t53;
+        long t58 = z4 ^ t46;
+        long t59 = z3 ^ t54;
+        long t60 = t46 ^ t57;
+        long t61 = z14 ^ t57;
+        long t62 = t52 ^ t58;
+        long t63 = t49 ^ t58;
+        long t64 = z4 ^ t59;
+        long t65 = t61 ^ t62;
+        long t66 = z1 ^ t63;
+        long s0 = t59 ^ t63;
+        long s6 = t56 ^ ~t62;
+        long s7 = t48 ^ ~t60;
+        long t67 = t64 ^ t65;
+        long s3 = t53 ^ t66;
+        long s4 = t51 ^ t66;
+        long s5 = t47 ^ t65;
+        long s1 = t64 ^ ~s3;
+        long s2 = t55 ^ ~t67;
+
+        q[7] = s0;
+        q[6] = s1;
+        q[5] = s2;
+        q[4] = s3;
+        q[3] = s4;
+        q[2] = s5;
+        q[1] = s6;
+        q[0] = s7;
+    }
+
+    /**
+     * Substitute all 64 bytes of the bit planes by the inverse S-Box, which is the S-Box
+     * between two inverse affine transformations: the first one gives the inverse of the byte,
+     * the S-Box computes the affine transformation of its inverse, i.e. of the original byte,
+     * and the second one removes the affine transformation.
+     *
+     * @param q 8 bit planes
+     */
+    static void invSubBytes(long[] q) {
+        invAffine(q);
+        subBytes(q);
+        invAffine(q);
+    }
+
+    /**
+     * Make the inverse affine transformation of the S-Box.
+     *
+     * @param q 8 bit planes
+     */
+    private static void invAffine(long[] q) {
+        // adding 0x63 inverts the planes 0, 1, 5 and 6
+        long q0 = ~q[0];
+        long q1 = ~q[1];
+        long q2 = q[2];
+        long q3 = q[3];
+        long q4 = q[4];
+        long q5 = ~q[5];
+        long q6 = ~q[6];
+        long q7 = q[7];
+        // bit i is the sum of the bits i + 2, i + 5 and i + 7
+        q[0] = q2 ^ q5 ^ q7;
+        q[1] = q3 ^ q6 ^ q0;
+        q[2] = q4 ^ q7 ^ q1;
+        q[3] = q5 ^ q0 ^ q2;
+        q[4] = q6 ^ q1 ^ q3;
+        q[5] = q7 ^ q2 ^ q4;
+        q[6] = q0 ^ q3 ^ q5;
+        q[7] = q1 ^ q4 ^ q6;
+    }
+}
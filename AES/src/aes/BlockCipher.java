@@ -0,0 +1,118 @@
+package aes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code BlockCipher} interface is implemented by all AES engines.
+ * Engines differ only in the way how the rounds are computed, for the same
+ * key all of them produce byte-identical results.
+ * <p>
+ * The block methods do not allocate any objects, input and output may
+ * be the same array. Instances keep round state between calls, so they
+ * must not be shared by several threads. Threads share the immutable
+ * {@link ExpandedKey} instead and create their own lightweight instances.
+ */
+public interface BlockCipher {
+    /** Size of the data block in bytes. */
+    int BLOCK_SIZE = 16;
+
+    /**
+     * Encrypt one data block.
+     *
+     * @param in plaintext
+     * @param inOff index of the first byte of the plaintext
+     * @param out array for the ciphertext
+     * @param outOff index of the first byte of the ciphertext
+     */
+    void encryptBlock(byte[] in, int inOff, byte[] out, int outOff);
+
+    /**
+     * Decrypt one data block.
+     *
+     * @param in ciphertext
+     * @param inOff index of the first byte of the ciphertext
+     * @param out array for the plaintext
+     * @param outOff index of the first byte of the plaintext
+     */
+    void decryptBlock(byte[] in, int inOff, byte[] out, int outOff);
+
+    /**
+     * Encrypt one data block from the current position of the input buffer
+     * to the current position of the output buffer. Positions of both
+     * buffers are moved by 16 bytes, byte order of the buffers is ignored.
+     *
+     * @param in buffer with plaintext
+     * @param out buffer for ciphertext, different object than {@code in}
+     */
+    void encryptBlock(ByteBuffer in, ByteBuffer out);
+
+    /**
+     * Decrypt one data block from the current position of the input buffer
+     * to the current position of the output buffer. Positions of both
+     * buffers are moved by 16 bytes, byte order of the buffers is ignored.
+     *
+     * @param in buffer with ciphertext
+     * @param out buffer for plaintext, different object than {@code in}
+     */
+    void decryptBlock(ByteBuffer in, ByteBuffer out);
+
+    /**
+     * Encrypt consecutive data blocks from the current position of the input
+     * buffer to the current position of the output buffer. Positions of both
+     * buffers are moved by {@code 16 * blocks} bytes.
+     *
+     * @param in buffer with plaintext
+     * @param out buffer for ciphertext, different object than {@code in}
+     * @param blocks count of blocks
+     */
+    default void encryptBlocks(ByteBuffer in, ByteBuffer out, int blocks) {
+        for (int i = 0; i < blocks; i++) {
+            encryptBlock(in, out);
+        }
+    }
+
+    /**
+     * Decrypt consecutive data blocks from the current position of the input
+     * buffer to the current position of the output buffer. Positions of both
+     * buffers are moved by {@code 16 * blocks} bytes.
+     *
+     * @param in buffer with ciphertext
+     * @param out buffer for plaintext, different object than {@code in}
+     * @param blocks count of blocks
+     */
+    default void decryptBlocks(ByteBuffer in, ByteBuffer out, int blocks) {
+        for (int i = 0; i < blocks; i++) {
+            decryptBlock(in, out);
+        }
+    }
+
+    /**
+     * Encrypt plaintext.
+     *
+     * @param datablock 16 bytes plaintext which is encrypt
+     * @return  encrypted data block in hexadecimal form
+     */
+    default String encrypt(int[] datablock) {
+        byte[] block = new byte[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            block[i] = (byte)datablock[i];
+        }
+        encryptBlock(block, 0, block, 0);
+        return Hex.toString(block, 0, BLOCK_SIZE);
+    }
+
+    /**
+     * Decrypt ciphertext.
+     *
+     * @param datablock 16 bytes ciphertext which is decrypt
+     * @return array of decrypted bytes
+     */
+    default byte[] decrypt(int[] datablock) {
+        byte[] block = new byte[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            block[i] = (byte)datablock[i];
+        }
+        decryptBlock(block, 0, block, 0);
+        return block;
+    }
+}
@@ -0,0 +1,221 @@
+package aes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code ChannelFileProcessor} class encrypts/decrypts whole files
+ * in the binary format (see {@link CipherFileHeader}). Data are read and
+ * written through {@link FileChannel} in large chunks and each chunk
+ * is transformed by a single call of the block cipher. Both direct buffers
+ * are allocated once and reused for all chunks and files.
+ */
+public class ChannelFileProcessor implements FileProcessor {
+    /** Default size of the chunk, 1 MiB. */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final BlockCipher cipher;
+    private final ByteBuffer input;  // chunk read from the input file
+    private final ByteBuffer output; // transformed chunk written to the output file
+
+    /**
+     * Create a processor with the default size of the chunk.
+     *
+     * @param cipher used block cipher
+     */
+    public ChannelFileProcessor(BlockCipher cipher) {
+        this(cipher, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a processor.
+     *
+     * @param cipher used block cipher
+     * @param bufferSize size of the chunk, rounded down to a multiple of 16 bytes
+     */
+    public ChannelFileProcessor(BlockCipher cipher, int bufferSize) {
+        int size = bufferSize - bufferSize % BlockCipher.BLOCK_SIZE;
+        if (size <= 0)
+            throw new IllegalArgumentException("Buffer has to have at least " + BlockCipher.BLOCK_SIZE + " bytes.");
+        this.cipher = cipher;
+        this.input = ByteBuffer.allocateDirect(size);
+        this.output = ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * Encrypt a plaintext file into the binary ciphertext file.
+     * The last block is filled by zeros, the header keeps the original length.
+     *
+     * @param source plaintext file
+     * @param target ciphertext file
+     * @throws IOException exception during reading/writing file
+     */
+    @Override
+    public void encrypt(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = openOutput(target)) {
+            output.clear();
+            new CipherFileHeader(CipherMode.ECB, in.size(), new byte[CipherFileHeader.IV_SIZE]).write(output);
+            output.flip();
+            writeFully(out, output);
+
+            int count;
+            do {
+                input.clear();
+                long time = CipherMetrics.start();
+                count = readFully(in, input);
+                CipherMetrics.stop(CipherMetrics.Stage.READ, time, count);
+                // if missing some bytes to 16, then fill the rest by zeros
+                while (input.position() % BlockCipher.BLOCK_SIZE != 0) {
+                    input.put((byte)0);
+                }
+                input.flip();
+                output.clear();
+                time = CipherMetrics.start();
+                cipher.encryptBlocks(input, output, input.limit() / BlockCipher.BLOCK_SIZE);
+                CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, input.limit());
+                output.flip();
+                time = CipherMetrics.start();
+                writeFully(out, output);
+                CipherMetrics.stop(CipherMetrics.Stage.WRITE, time, output.limit());
+            } while (count == input.capacity());
+        }
+    }
+
+    /**
+     * Decrypt a binary ciphertext file. The last block
+     * is cut to the original length from the header.
+     *
+     * @param source ciphertext file
+     * @param target plaintext file
+     * @throws IOException if the ciphertext file is not valid or exception during reading/writing file
+     */
+    @Override
+    public void decrypt(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = openOutput(target)) {
+            CipherFileHeader header = readHeader(in);
+            if (header.getMode() != CipherMode.ECB)
+                throw new IOException("Unsupported mode: " + header.getMode());
+            if (header.getLength() == CipherFileHeader.UNKNOWN_LENGTH) {
+                decryptStream(cipher, in, out);
+                return;
+            }
+
+            long remaining = header.getLength();
+            while (remaining > 0) {
+                input.clear();
+                if (remaining < input.capacity()) // read only the rest of the blocks
+                    input.limit((int)(paddedLength(remaining)));
+                long time = CipherMetrics.start();
+                readFully(in, input);
+                CipherMetrics.stop(CipherMetrics.Stage.READ, time, input.position());
+                if (input.hasRemaining())
+                    throw new EOFException("Ciphertext file is truncated.");
+                input.flip();
+                output.clear();
+                time = CipherMetrics.start();
+                cipher.decryptBlocks(input, output, input.limit() / BlockCipher.BLOCK_SIZE);
+                CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, input.limit());
+                output.flip();
+                if (remaining < output.limit())
+                    output.limit((int)remaining);
+                remaining -= output.limit();
+                time = CipherMetrics.start();
+                writeFully(out, output);
+                CipherMetrics.stop(CipherMetrics.Stage.WRITE, time, output.limit());
+            }
+        }
+    }
+
+    /**
+     * Read and check the header of the binary ciphertext file.
+     *
+     * @param in channel at the beginning of the file
+     * @return read header
+     * @throws IOException if the header is not valid or exception during reading
+     */
+    static CipherFileHeader readHeader(FileChannel in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CipherFileHeader.SIZE);
+        readFully(in, buffer);
+        if (buffer.hasRemaining())
+            throw new EOFException("Ciphertext file is truncated.");
+        buffer.flip();
+        return CipherFileHeader.read(buffer);
+    }
+
+    /**
+     * Decrypt a ciphertext file written by {@link EncryptingOutputStream}, its length
+     * is not in the header, so the padding is found at the end of the stream.
+     *
+     * @param cipher used block cipher
+     * @param in channel of the ciphertext file
+     * @param out channel of the plaintext file
+     * @throws IOException if the ciphertext file is not valid or exception during reading/writing file
+     */
+    static void decryptStream(BlockCipher cipher, FileChannel in, FileChannel out) throws IOException {
+        in.position(0);
+        // the streams are not closed, the channels are closed by the caller
+        new DecryptingInputStream(Channels.newInputStream(in), cipher, DEFAULT_BUFFER_SIZE)
+                .transferTo(Channels.newOutputStream(out));
+    }
+
+    /**
+     * Get length of the data rounded up to whole blocks.
+     *
+     * @param length length of the data
+     * @return length of the blocks
+     */
+    static long paddedLength(long length) {
+        return (length + BlockCipher.BLOCK_SIZE - 1) / BlockCipher.BLOCK_SIZE * BlockCipher.BLOCK_SIZE;
+    }
+
+    /**
+     * Open an output file, existing file is truncated.
+     *
+     * @param target output file
+     * @return channel for writing
+     * @throws IOException exception during opening file
+     */
+    static FileChannel openOutput(Path target) throws IOException {
+        return FileChannel.open(target, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Read from the channel until the buffer is full or end of the file.
+     *
+     * @param in source channel
+     * @param buffer destination buffer
+     * @return count of read bytes
+     * @throws IOException exception during reading
+     */
+    static int readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        int count = 0;
+        while (buffer.hasRemaining()) {
+            int n = in.read(buffer);
+            if (n < 0)
+                break;
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Write all remaining bytes of the buffer.
+     *
+     * @param out destination channel
+     * @param buffer source buffer
+     * @throws IOException exception during writing
+     */
+    static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package aes;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The {@code ChunkEvent} is the JFR event of one timed chunk of {@link CipherMetrics},
+ * recorded only when a flight recording with the event enabled is running.
+ */
+@Name("aes.Chunk")
+@Label("AES Chunk")
+@Category("AES")
+@Description("Time of a stage of the cipher pipeline for one chunk")
+@StackTrace(false)
+class ChunkEvent extends jdk.jfr.Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Time")
+    @Timespan
+    long nanos;
+}
@@ -0,0 +1,101 @@
+package aes;
+
+/**
+ * The {@code CipherEngine} enumerates available implementations
+ * of the {@link BlockCipher} and creates their instances.
+ */
+public enum CipherEngine {
+    /** Byte oriented implementation, see {@link AdvancedEncryptionStandard}. */
+    REFERENCE("reference") {
+        @Override
+        public BlockCipher create(ExpandedKey key) {
+            return new AdvancedEncryptionStandard(key);
+        }
+    },
+    /** 32-bit word implementation with T-tables, see {@link TableAdvancedEncryptionStandard}. */
+    TABLE("table") {
+        @Override
+        public BlockCipher create(ExpandedKey key) {
+            return new TableAdvancedEncryptionStandard(key);
+        }
+    },
+    /**
+     * Multi-block implementation with the Vector API, see {@code VectorAdvancedEncryptionStandard}.
+     * It is the table implementation if the module {@code jdk.incubator.vector} is not available.
+     */
+    VECTOR("vector") {
+        @Override
+        public BlockCipher create(ExpandedKey key) {
+            return VectorEngineLoader.create(key);
+        }
+    },
+    /**
+     * Bitsliced implementation without table lookups, resistant to the cache-timing attacks,
+     * see {@link ConstantTimeAdvancedEncryptionStandard}.
+     */
+    CONSTANT_TIME("constant-time") {
+        @Override
+        public BlockCipher create(ExpandedKey key) {
+            return new ConstantTimeAdvancedEncryptionStandard(key);
+        }
+    };
+
+    /** System property with the name of the default engine, e.g. {@code -Daes.engine=constant-time}. */
+    public static final String PROPERTY = "aes.engine";
+
+    private final String name; // name used on the command line
+
+    CipherEngine(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Create an instance of the engine using already expanded key.
+     * The instance is not thread-safe, but it is cheap to create
+     * one instance per thread sharing the same expanded key.
+     *
+     * @param key expanded key
+     * @return new block cipher
+     */
+    public abstract BlockCipher create(ExpandedKey key);
+
+    /**
+     * Create an instance of the engine and generate all expansion keys.
+     *
+     * @param key initial key
+     * @return new block cipher
+     */
+    public BlockCipher create(String key) {
+        return create(ExpandedKey.of(key));
+    }
+
+    /**
+     * Find an engine by its name.
+     *
+     * @param name name of the engine
+     * @return engine with the given name
+     * @throws IllegalArgumentException if there is no such engine
+     */
+    public static CipherEngine fromName(String name) {
+        for (CipherEngine engine : values()) {
+            if (engine.name.equalsIgnoreCase(name))
+                return engine;
+        }
+        throw new IllegalArgumentException("Unknown engine: " + name);
+    }
+
+    /**
+     * Get the default engine of the deployment, given by the system property {@link #PROPERTY}.
+     *
+     * @return engine given by the property, the table engine if the property is not set
+     * @throws IllegalArgumentException if the property has an unknown name
+     */
+    public static CipherEngine getDefault() {
+        return fromName(System.getProperty(PROPERTY, TABLE.name));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,131 @@
+package aes;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code CipherFileHeader} class represents a header of the binary
+ * ciphertext file. The header is followed by raw ciphertext.
+ * <pre>
+ *  offset  size  content
+ *       0     4  magic "AESB"
+ *       4     1  version of the format
+ *       5     1  mode of operation, see {@link CipherMode#getCode()}
+ *       6     2  reserved, zero
+ *       8     8  length of the original plaintext, -1 if it was not known (stream with padding)
+ *      16    16  initialization vector/nonce, zero if the mode does not use it
+ * </pre>
+ * All numbers are stored in big-endian byte order.
+ */
+public class CipherFileHeader {
+    /** Size of the header in bytes. */
+    public static final int SIZE = 32;
+    /** Size of the initialization vector in bytes. */
+    public static final int IV_SIZE = 16;
+    /** Length of the plaintext encrypted as a stream, the last block has PKCS#7 padding, ECB only. */
+    public static final long UNKNOWN_LENGTH = -1;
+
+    private static final int MAGIC = 0x41455342; // "AESB"
+    private static final int VERSION = 1;
+
+    private final CipherMode mode; // mode of operation
+    private final long length;     // length of the plaintext
+    private final byte[] iv;       // initialization vector/nonce
+
+    /**
+     * Create a header.
+     *
+     * @param mode mode of operation
+     * @param length length of the original plaintext
+     * @param iv initialization vector/nonce, 16 bytes
+     */
+    public CipherFileHeader(CipherMode mode, long length, byte[] iv) {
+        if (iv.length != IV_SIZE)
+            throw new IllegalArgumentException("Initialization vector has to have " + IV_SIZE + " bytes.");
+        this.mode = mode;
+        this.length = length;
+        this.iv = iv.clone();
+    }
+
+    public CipherMode getMode() {
+        return mode;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public byte[] getIv() {
+        return iv.clone();
+    }
+
+    /**
+     * Write the header at the position of the buffer.
+     *
+     * @param out destination of the header, has to have at least {@link #SIZE} bytes remaining
+     */
+    public void write(ByteBuffer out) {
+        out.putInt(MAGIC);
+        out.put((byte)VERSION);
+        out.put((byte)mode.getCode());
+        out.putShort((short)0);
+        out.putLong(length);
+        out.put(iv);
+    }
+
+    /**
+     * Write the header.
+     *
+     * @param out destination of the header
+     * @throws IOException exception during writing
+     */
+    public void write(DataOutput out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        write(buffer);
+        out.write(buffer.array());
+    }
+
+    /**
+     * Read and check the header from the position of the buffer.
+     *
+     * @param in source of the header, has to have at least {@link #SIZE} bytes remaining
+     * @return read header
+     * @throws IOException if the header is not valid
+     */
+    public static CipherFileHeader read(ByteBuffer in) throws IOException {
+        if (in.getInt() != MAGIC)
+            throw new IOException("Input is not a binary ciphertext file.");
+        int version = in.get() & 0xff;
+        if (version != VERSION)
+            throw new IOException("Unsupported version of the ciphertext file: " + version);
+        CipherMode mode;
+        try {
+            mode = CipherMode.fromCode(in.get() & 0xff);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        in.getShort();
+        long length = in.getLong();
+        if (length < 0 && !(length == UNKNOWN_LENGTH && mode == CipherMode.ECB))
+            throw new IOException("Invalid length of the plaintext: " + length);
+        byte[] iv = new byte[IV_SIZE];
+        in.get(iv);
+        return new CipherFileHeader(mode, length, iv);
+    }
+
+    /**
+     * Read and check the header.
+     *
+     * @param in source of the header
+     * @return read header
+     * @throws IOException if the header is not valid or exception during reading
+     */
+    public static CipherFileHeader read(DataInput in) throws IOException {
+        byte[] bytes = new byte[SIZE];
+        in.readFully(bytes);
+        return read(ByteBuffer.wrap(bytes));
+    }
+}
@@ -0,0 +1,352 @@
+package aes;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The {@code CipherMetrics} class collects process-wide counters of the cipher pipeline:
+ * processed bytes and blocks, latency of the stages of every chunk (reading, hex parsing
+ * and formatting, cipher rounds and writing) with histograms, key expansions, hits of the
+ * {@link KeyScheduleCache} and depth of the queues of the parallel processors.
+ * Stages timed as a large share of the total time show whether a job is I/O-bound
+ * or CPU-bound.
+ * <p>
+ * Metrics are disabled by default, then a timed stage costs one read of a volatile
+ * field. They are enabled by the system property {@value #PROPERTY} (sampling period)
+ * or by {@link #setSampling(int)}; enabling registers the MXBean {@value #OBJECT_NAME},
+ * the server registers it at the start, so the metrics can be enabled over JMX.
+ * Every timed chunk is also a JFR event {@code aes.Chunk}. All methods are thread-safe.
+ */
+public final class CipherMetrics {
+    /** System property with the sampling period, e.g. {@code -Daes.metrics=1}. */
+    public static final String PROPERTY = "aes.metrics";
+    /** Name of the MXBean in the platform MBean server. */
+    public static final String OBJECT_NAME = "aes:type=CipherMetrics";
+
+    private static final int BUCKETS = 24; // buckets of the histogram, the last one is above 4 s
+
+    /** Stages of processing of a chunk. */
+    public enum Stage {
+        READ("read"), HEX("hex"), CIPHER("cipher"), WRITE("write");
+
+        private final String name; // name used in the reports
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final LongAdder BYTES = new LongAdder();
+    private static final LongAdder BLOCKS = new LongAdder();
+    private static final LongAdder KEY_EXPANSIONS = new LongAdder();
+    private static final LongAdder CACHE_HITS = new LongAdder();
+    private static final LongAdder CACHE_MISSES = new LongAdder();
+    private static final LongAccumulator MAX_QUEUE_DEPTH = new LongAccumulator(Math::max, 0);
+    private static final Map<Stage, Timer> TIMERS = new EnumMap<>(Stage.class);
+
+    private static volatile int sampling; // 0 = disabled, n = one of n chunks is timed
+    private static volatile long queueDepth; // last observed depth of a queue
+    private static boolean registered; // true = the MXBean is registered
+
+    static {
+        for (Stage stage : Stage.values()) {
+            TIMERS.put(stage, new Timer());
+        }
+        setSampling(Integer.getInteger(PROPERTY, 0));
+    }
+
+    private CipherMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return sampling > 0;
+    }
+
+    public static int getSampling() {
+        return sampling;
+    }
+
+    /**
+     * Enable or disable the metrics, the collected values are kept when
+     * the metrics are disabled. Enabling registers the MXBean.
+     *
+     * @param period 1 = time every chunk, n = time one of n chunks, 0 = disable all metrics
+     * @throws IllegalArgumentException if the period is negative
+     */
+    public static void setSampling(int period) {
+        if (period < 0)
+            throw new IllegalArgumentException("Sampling period has to be non-negative.");
+        if (period > 0)
+            register();
+        sampling = period;
+    }
+
+    /**
+     * Start timing of a stage.
+     *
+     * @return start time for {@link #stop(Stage, long, long)}, 0 if this chunk is not timed
+     */
+    public static long start() {
+        int period = sampling;
+        if (period == 0 || (period > 1 && ThreadLocalRandom.current().nextInt(period) != 0))
+            return 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Finish timing of a stage of one chunk. Bytes of the cipher stage are counted
+     * as processed data even if the chunk is not timed.
+     *
+     * @param stage the stage
+     * @param start value returned by {@link #start()}
+     * @param bytes size of the chunk
+     */
+    public static void stop(Stage stage, long start, long bytes) {
+        if (sampling == 0)
+            return;
+        if (stage == Stage.CIPHER) {
+            BYTES.add(bytes);
+            BLOCKS.add((bytes + BlockCipher.BLOCK_SIZE - 1) / BlockCipher.BLOCK_SIZE);
+        }
+        if (start == 0)
+            return;
+        long nanos = System.nanoTime() - start;
+        TIMERS.get(stage).record(nanos);
+
+        ChunkEvent event = new ChunkEvent();
+        if (event.isEnabled()) {
+            event.stage = stage.toString();
+            event.bytes = bytes;
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    /** Count one expansion of a key. */
+    static void keyExpanded() {
+        if (sampling > 0)
+            KEY_EXPANSIONS.increment();
+    }
+
+    /**
+     * Count one request of the key cache.
+     *
+     * @param hit true if the key was found in the cache
+     */
+    static void cacheRequest(boolean hit) {
+        if (sampling > 0)
+            (hit ? CACHE_HITS : CACHE_MISSES).increment();
+    }
+
+    /**
+     * Observe depth of the queue of a parallel processor.
+     *
+     * @param depth count of waiting tasks
+     */
+    static void queued(long depth) {
+        if (sampling > 0) {
+            queueDepth = depth;
+            MAX_QUEUE_DEPTH.accumulate(depth);
+        }
+    }
+
+    /** Set all counters to zero. */
+    public static void reset() {
+        BYTES.reset();
+        BLOCKS.reset();
+        KEY_EXPANSIONS.reset();
+        CACHE_HITS.reset();
+        CACHE_MISSES.reset();
+        MAX_QUEUE_DEPTH.reset();
+        queueDepth = 0;
+        for (Timer timer : TIMERS.values()) {
+            timer.reset();
+        }
+    }
+
+    /**
+     * Print a summary of the metrics: processed data, time of the stages and the key counters.
+     *
+     * @param out destination of the summary
+     */
+    public static void report(PrintStream out) {
+        out.printf("Processed %d bytes (%d blocks).%n", BYTES.sum(), BLOCKS.sum());
+        long total = 0;
+        for (Timer timer : TIMERS.values()) {
+            total += timer.nanos.sum();
+        }
+        for (Map.Entry<Stage, Timer> entry : TIMERS.entrySet()) {
+            Timer timer = entry.getValue();
+            long count = timer.count.sum();
+            if (count == 0)
+                continue;
+            long nanos = timer.nanos.sum();
+            out.printf("%-7s %8d chunks %10.3f ms %5.1f %% avg %9.1f us max %9.1f us%n", entry.getKey(), count,
+                    nanos / 1e6, 100.0 * nanos / total, nanos / 1e3 / count, timer.max.get() / 1e3);
+        }
+        out.printf("Key expansions %d, cache hits %d, cache misses %d, max queue depth %d.%n",
+                KEY_EXPANSIONS.sum(), CACHE_HITS.sum(), CACHE_MISSES.sum(), MAX_QUEUE_DEPTH.get());
+    }
+
+    /**
+     * Register the MXBean, only once, failure is ignored. It is done when the metrics
+     * are enabled, a service calls it at the start, so the metrics can be enabled over JMX
+     * before the first request.
+     */
+    static synchronized void register() {
+        if (registered)
+            return;
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException e) { // e.g. another copy of the class registered it already
+            System.err.println("Metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The {@code Timer} class keeps count, total time, maximum and histogram of the latencies of a stage.
+     */
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+        Timer() {
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Record one latency.
+         *
+         * @param time latency in nanoseconds
+         */
+        void record(long time) {
+            count.increment();
+            nanos.add(time);
+            max.accumulate(time);
+            // bucket i holds latencies from 2^(i-1) to 2^i microseconds
+            histogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(time >>> 10))].increment();
+        }
+
+        long[] histogram() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram[i].sum();
+            }
+            return counts;
+        }
+
+        void reset() {
+            count.reset();
+            nanos.reset();
+            max.reset();
+            for (LongAdder bucket : histogram) {
+                bucket.reset();
+            }
+        }
+    }
+
+    /** The {@code Bean} class exposes the static metrics as the MXBean. */
+    private static final class Bean implements CipherMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return CipherMetrics.isEnabled();
+        }
+
+        @Override
+        public int getSampling() {
+            return CipherMetrics.getSampling();
+        }
+
+        @Override
+        public void setSampling(int sampling) {
+            CipherMetrics.setSampling(sampling);
+        }
+
+        @Override
+        public long getBytes() {
+            return BYTES.sum();
+        }
+
+        @Override
+        public long getBlocks() {
+            return BLOCKS.sum();
+        }
+
+        @Override
+        public long getKeyExpansions() {
+            return KEY_EXPANSIONS.sum();
+        }
+
+        @Override
+        public long getCacheHits() {
+            return CACHE_HITS.sum();
+        }
+
+        @Override
+        public long getCacheMisses() {
+            return CACHE_MISSES.sum();
+        }
+
+        @Override
+        public long getQueueDepth() {
+            return queueDepth;
+        }
+
+        @Override
+        public long getMaxQueueDepth() {
+            return MAX_QUEUE_DEPTH.get();
+        }
+
+        @Override
+        public Map<String, Long> getStageCount() {
+            Map<String, Long> values = new LinkedHashMap<>();
+            TIMERS.forEach((stage, timer) -> values.put(stage.toString(), timer.count.sum()));
+            return values;
+        }
+
+        @Override
+        public Map<String, Long> getStageNanos() {
+            Map<String, Long> values = new LinkedHashMap<>();
+            TIMERS.forEach((stage, timer) -> values.put(stage.toString(), timer.nanos.sum()));
+            return values;
+        }
+
+        @Override
+        public Map<String, Long> getStageMaxNanos() {
+            Map<String, Long> values = new LinkedHashMap<>();
+            TIMERS.forEach((stage, timer) -> values.put(stage.toString(), timer.max.get()));
+            return values;
+        }
+
+        @Override
+        public Map<String, long[]> getStageHistogram() {
+            Map<String, long[]> values = new LinkedHashMap<>();
+            TIMERS.forEach((stage, timer) -> values.put(stage.toString(), timer.histogram()));
+            return values;
+        }
+
+        @Override
+        public void reset() {
+            CipherMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package aes;
+
+import java.util.Map;
+
+/**
+ * The {@code CipherMetricsMXBean} interface is the JMX view of {@link CipherMetrics},
+ * registered as {@value CipherMetrics#OBJECT_NAME} in the platform MBean server.
+ * Maps are keyed by the names of the stages (read, hex, cipher, write).
+ */
+public interface CipherMetricsMXBean {
+
+    boolean isEnabled();
+
+    int getSampling();
+
+    /**
+     * Set the sampling period of the timings, counters of bytes are not sampled.
+     *
+     * @param sampling 1 = time every chunk, n = time one of n chunks, 0 = disable all metrics
+     */
+    void setSampling(int sampling);
+
+    long getBytes();
+
+    long getBlocks();
+
+    long getKeyExpansions();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getQueueDepth();
+
+    long getMaxQueueDepth();
+
+    /**
+     * Get count of the timed chunks of every stage.
+     *
+     * @return stage name -> count
+     */
+    Map<String, Long> getStageCount();
+
+    /**
+     * Get total time of the timed chunks of every stage.
+     *
+     * @return stage name -> nanoseconds
+     */
+    Map<String, Long> getStageNanos();
+
+    /**
+     * Get the longest timed chunk of every stage.
+     *
+     * @return stage name -> nanoseconds
+     */
+    Map<String, Long> getStageMaxNanos();
+
+    /**
+     * Get histogram of the latencies of every stage. Bucket 0 counts chunks
+     * faster than 1 µs, bucket i counts chunks from 2^(i-1) to 2^i µs,
+     * the last bucket counts all slower chunks.
+     *
+     * @return stage name -> counts of the buckets
+     */
+    Map<String, long[]> getStageHistogram();
+
+    /** Set all counters to zero. */
+    void reset();
+}
@@ -0,0 +1,66 @@
+package aes;
+
+/**
+ * The {@code CipherMode} enumerates modes of operation which can be stored
+ * in the header of the binary ciphertext file.
+ */
+public enum CipherMode {
+    /** Electronic codebook, every block is encrypted separately. */
+    ECB("ecb", 0),
+    /** Counter mode, blocks are XORed with encrypted counter blocks and can be processed in parallel. */
+    CTR("ctr", 1),
+    /** Galois/counter mode, data are split into segments authenticated separately. */
+    GCM("gcm", 2);
+
+    private final String name; // name used on the command line
+    private final int code;    // identifier stored in the file header
+
+    CipherMode(String name, int code) {
+        this.name = name;
+        this.code = code;
+    }
+
+    /**
+     * Get identifier of the mode stored in the file header.
+     *
+     * @return identifier of the mode
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Find a mode by its name.
+     *
+     * @param name name of the mode
+     * @return mode with the given name
+     * @throws IllegalArgumentException if there is no such mode
+     */
+    public static CipherMode fromName(String name) {
+        for (CipherMode mode : values()) {
+            if (mode.name.equalsIgnoreCase(name))
+                return mode;
+        }
+        throw new IllegalArgumentException("Unknown mode: " + name);
+    }
+
+    /**
+     * Find a mode by its identifier from the file header.
+     *
+     * @param code identifier of the mode
+     * @return mode with the given identifier
+     * @throws IllegalArgumentException if there is no such mode
+     */
+    public static CipherMode fromCode(int code) {
+        for (CipherMode mode : values()) {
+            if (mode.code == code)
+                return mode;
+        }
+        throw new IllegalArgumentException("Unknown mode: " + code);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,232 @@
+package aes;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The {@code CipherServer} class is an embedded HTTP service which streams request
+ * bodies through the cipher, so many small files do not pay the start of the JVM and
+ * the key expansion. {@code POST /encrypt} returns the binary ciphertext of the body
+ * in the streaming format (see {@link EncryptingOutputStream}), {@code POST /decrypt}
+ * returns the plaintext of such a ciphertext (see {@link DecryptingInputStream}).
+ * The key is given by the header {@value #KEY_HEADER} (as {@link KeyMaterial#parse(String)}),
+ * or the default key of the server is used.
+ * <p>
+ * Every request runs in its own virtual thread if the runtime has them (Java 21+),
+ * otherwise in a cached pool of threads, see {@link #createExecutor()}. Expanded keys and idle instances of the cipher
+ * are shared by all requests through the {@link KeyScheduleCache}, the copy buffers
+ * and the buffers of the streams are pooled.
+ * The ciphertext is checked while it is streamed back, so an invalid ciphertext
+ * aborts the response after the status was sent.
+ */
+public class CipherServer {
+    /** Header with the key of the request. */
+    public static final String KEY_HEADER = "X-AES-Key";
+
+    private static final int BUFFER_SIZE = 1 << 14; // size of the copy buffers and the chunks of the streams
+    private static final int POOLED_BUFFERS = 256; // buffers kept for the next requests, two per request
+
+    private final HttpServer server;
+    private final ExecutorService executor; // runs the requests
+    private final CipherEngine engine;
+    private final byte[] defaultKey; // key of the requests without the key header, null = header is required
+    private final KeyScheduleCache keys; // expanded keys shared by all requests
+    private final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+    /**
+     * Create a server, it does not accept requests until it is started.
+     *
+     * @param address address and port, port 0 = any free port
+     * @param engine engine of the cipher
+     * @param defaultKey key of the requests without the key header, null = header is required
+     * @param keys cache of the expanded keys and the instances of the cipher
+     * @throws IOException if the address cannot be bound
+     */
+    public CipherServer(InetSocketAddress address, CipherEngine engine, byte[] defaultKey, KeyScheduleCache keys)
+            throws IOException {
+        this.engine = engine;
+        this.defaultKey = defaultKey == null ? null : defaultKey.clone();
+        this.keys = keys;
+        this.executor = createExecutor();
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/encrypt", exchange -> handle(exchange, true));
+        server.createContext("/decrypt", exchange -> handle(exchange, false));
+    }
+
+    /** Start accepting requests in the background. */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests, wait for the running ones and stop the threads.
+     *
+     * @param delay maximal time in seconds to wait for the running requests
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    /**
+     * Get the bound address, useful if the server was created with port 0.
+     *
+     * @return address of the server
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Create an executor with a virtual thread per request. The classes are compiled
+     * for Java 11, so virtual threads are found reflectively and used only on a Java 21+
+     * runtime, older runtimes (also Java 17 of the build) get a cached pool instead.
+     *
+     * @return executor of the requests
+     */
+    static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Encrypt/decrypt the body of one request into the response.
+     *
+     * @param exchange the request and the response
+     * @param encryption true = encryption, false = decryption
+     * @throws IOException exception during reading/writing, the connection is closed without
+     *                     the end of the response, so the client does not take a part as the whole
+     */
+    private void handle(HttpExchange exchange, boolean encryption) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            sendError(exchange, 405, "Only POST is supported.");
+            return;
+        }
+        if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+            sendError(exchange, 404, "Unknown path.");
+            return;
+        }
+        byte[] key;
+        BlockCipher cipher;
+        try {
+            String header = exchange.getRequestHeaders().getFirst(KEY_HEADER);
+            if (header == null && defaultKey == null)
+                throw new IllegalArgumentException("Key has to be given by the header " + KEY_HEADER + ".");
+            key = header != null ? KeyMaterial.parse(header) : defaultKey;
+            cipher = keys.acquire(key, engine);
+        }
+        catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+
+        byte[] buffer = takeBuffer();
+        byte[] chunk = takeBuffer();
+        try {
+            if (encryption)
+                encrypt(exchange, cipher, buffer, chunk);
+            else
+                decrypt(exchange, cipher, buffer, chunk);
+        }
+        finally {
+            buffers.offer(chunk);
+            buffers.offer(buffer);
+            keys.release(key, engine, cipher);
+        }
+    }
+
+    /**
+     * Take a buffer from the pool or allocate a new one if the pool is empty.
+     *
+     * @return buffer of {@link #BUFFER_SIZE} bytes
+     */
+    private byte[] takeBuffer() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Stream the request body into the ciphertext.
+     *
+     * @param exchange the request and the response
+     * @param cipher block cipher of the request
+     * @param buffer pooled copy buffer
+     * @param chunk pooled buffer of the stream
+     * @throws IOException exception during reading/writing
+     */
+    private static void encrypt(HttpExchange exchange, BlockCipher cipher, byte[] buffer, byte[] chunk)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, 0); // chunked, the length is not known
+        InputStream in = exchange.getRequestBody();
+        EncryptingOutputStream out = new EncryptingOutputStream(exchange.getResponseBody(), cipher, chunk);
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        out.close(); // ends the response only if all was written
+    }
+
+    /**
+     * Stream the ciphertext from the request body into the plaintext.
+     * An invalid header is reported by the status 400.
+     *
+     * @param exchange the request and the response
+     * @param cipher block cipher of the request
+     * @param buffer pooled copy buffer
+     * @param chunk pooled buffer of the stream
+     * @throws IOException exception during reading/writing or invalid ciphertext
+     */
+    private static void decrypt(HttpExchange exchange, BlockCipher cipher, byte[] buffer, byte[] chunk)
+            throws IOException {
+        DecryptingInputStream in;
+        try {
+            in = new DecryptingInputStream(exchange.getRequestBody(), cipher, chunk);
+        }
+        catch (IOException e) {
+            sendError(exchange, 400, "Invalid ciphertext" + (e.getMessage() != null ? ": " + e.getMessage() : "."));
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        out.close(); // ends the response only if the whole ciphertext was valid
+    }
+
+    /**
+     * Send a response with the status and a text message.
+     *
+     * @param exchange the request and the response
+     * @param status HTTP status code
+     * @param message text of the response
+     * @throws IOException exception during writing
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
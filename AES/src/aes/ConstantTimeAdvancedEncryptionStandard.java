@@ -0,0 +1,306 @@
+package aes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The {@code ConstantTimeAdvancedEncryptionStandard} class is an AES engine resistant
+ * to the cache-timing attacks. The table engines select the memory address by the
+ * bytes of the state, so the time of the lookups reveals the key to a process
+ * sharing the cache. This engine has no table lookup and no branch depending
+ * on the data or the key: the state of 4 blocks is bitsliced into 8 words of 64 bits
+ * (see {@link Bitslice}), SubBytes is a Boolean circuit and ShiftRows and MixColumns
+ * are shifts and rotations of the words. The bulk methods encrypt 4 blocks at once,
+ * a single block costs as much as 4 blocks. Results are byte-identical with
+ * {@link AdvancedEncryptionStandard}.
+ */
+public class ConstantTimeAdvancedEncryptionStandard implements BlockCipher {
+    private static final int SIZE = 16; // size of the datablock
+    private static final int COLUMN_SIZE = 4; // size of the column/row
+    private static final int BLOCKS = 4; // count of blocks processed at once
+    private static final int BIT_MASK = 255; // mask to create 8bit integer
+
+    private final long[] roundKeys; // bitsliced round keys, 8 planes per round
+    private final int rounds; // count of rounds, 10, 12 or 14
+    private final long[] state = new long[Bitslice.PLANES]; // bit planes of 4 datablocks, reused between calls
+    private final int[] words = new int[BLOCKS * COLUMN_SIZE]; // little-endian words of 4 datablocks
+
+    /**
+     * Create an instance of AES and generate all expansion keys.
+     *
+     * @param key initial key
+     */
+    public ConstantTimeAdvancedEncryptionStandard(String key) {
+        this(ExpandedKey.of(key));
+    }
+
+    /**
+     * Create an instance of AES using already expanded key. Creation bitslices
+     * the round keys, every thread can have its own instance sharing the expanded key.
+     *
+     * @param key expanded key
+     */
+    public ConstantTimeAdvancedEncryptionStandard(ExpandedKey key) {
+        this.roundKeys = Bitslice.roundKeys(key);
+        this.rounds = key.getRounds();
+    }
+
+    @Override
+    public void encryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        load(in, inOff);
+        encrypt();
+        store(out, outOff);
+    }
+
+    @Override
+    public void decryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        load(in, inOff);
+        decrypt();
+        store(out, outOff);
+    }
+
+    @Override
+    public void encryptBlock(ByteBuffer in, ByteBuffer out) {
+        encryptBlocks(in, out, 1);
+    }
+
+    @Override
+    public void decryptBlock(ByteBuffer in, ByteBuffer out) {
+        decryptBlocks(in, out, 1);
+    }
+
+    @Override
+    public void encryptBlocks(ByteBuffer in, ByteBuffer out, int blocks) {
+        while (blocks > 0) {
+            int count = Math.min(BLOCKS, blocks);
+            load(in, count);
+            encrypt();
+            store(out, count);
+            blocks -= count;
+        }
+    }
+
+    @Override
+    public void decryptBlocks(ByteBuffer in, ByteBuffer out, int blocks) {
+        while (blocks > 0) {
+            int count = Math.min(BLOCKS, blocks);
+            load(in, count);
+            decrypt();
+            store(out, count);
+            blocks -= count;
+        }
+    }
+
+    /** Encrypt the bit planes of the state in place. */
+    private void encrypt() {
+        addRoundKey(0);
+        for (int round = 1; round < rounds; round++) {
+            Bitslice.subBytes(state);
+            shiftRows();
+            mixColumns();
+            addRoundKey(round);
+        }
+        Bitslice.subBytes(state);
+        shiftRows();
+        addRoundKey(rounds);
+    }
+
+    /** Decrypt the bit planes of the state in place. */
+    private void decrypt() {
+        addRoundKey(rounds);
+        for (int round = rounds - 1; round > 0; round--) {
+            invShiftRows();
+            Bitslice.invSubBytes(state);
+            addRoundKey(round);
+            invMixColumns();
+        }
+        invShiftRows();
+        Bitslice.invSubBytes(state);
+        addRoundKey(0);
+    }
+
+    /**
+     * Make AddRoundKey.
+     *
+     * @param round index of the round key
+     */
+    private void addRoundKey(int round) {
+        int k = round * Bitslice.PLANES;
+        for (int i = 0; i < Bitslice.PLANES; i++) {
+            state[i] ^= roundKeys[k + i];
+        }
+    }
+
+    /**
+     * Make ShiftRows. The row i of 4 blocks is in the bits 16 * i to 16 * i + 15 of the plane,
+     * the column j in the bits 4 * j to 4 * j + 3 of the row, row i is rotated left by i columns.
+     */
+    private void shiftRows() {
+        for (int i = 0; i < Bitslice.PLANES; i++) {
+            long x = state[i];
+            state[i] = (x & 0x000000000000FFFFL)
+                    | ((x & 0x00000000FFF00000L) >>> 4) | ((x & 0x00000000000F0000L) << 12)
+                    | ((x & 0x0000FF0000000000L) >>> 8) | ((x & 0x000000FF00000000L) << 8)
+                    | ((x & 0xF000000000000000L) >>> 12) | ((x & 0x0FFF000000000000L) << 4);
+        }
+    }
+
+    /** Make InvShiftRows, row i is rotated right by i columns. */
+    private void invShiftRows() {
+        for (int i = 0; i < Bitslice.PLANES; i++) {
+            long x = state[i];
+            state[i] = (x & 0x000000000000FFFFL)
+                    | ((x & 0x000000000FFF0000L) << 4) | ((x & 0x00000000F0000000L) >>> 12)
+                    | ((x & 0x000000FF00000000L) << 8) | ((x & 0x0000FF0000000000L) >>> 8)
+                    | ((x & 0x000F000000000000L) << 12) | ((x & 0xFFF0000000000000L) >>> 4);
+        }
+    }
+
+    /**
+     * Make MixColumns. Rotation of the plane by 16 bits gives the next row, by 32 bits
+     * the row after it. The plane i of 2 * a[i] + 3 * a[i + 1] is the plane i - 1
+     * of a[i] + a[i + 1], the plane 7 is reduced into the planes 0, 1, 3 and 4.
+     */
+    private void mixColumns() {
+        long q0 = state[0], q1 = state[1], q2 = state[2], q3 = state[3];
+        long q4 = state[4], q5 = state[5], q6 = state[6], q7 = state[7];
+        long r0 = rotate16(q0), r1 = rotate16(q1), r2 = rotate16(q2), r3 = rotate16(q3);
+        long r4 = rotate16(q4), r5 = rotate16(q5), r6 = rotate16(q6), r7 = rotate16(q7);
+        state[0] = q7 ^ r7 ^ r0 ^ rotate32(q0 ^ r0);
+        state[1] = q0 ^ r0 ^ q7 ^ r7 ^ r1 ^ rotate32(q1 ^ r1);
+        state[2] = q1 ^ r1 ^ r2 ^ rotate32(q2 ^ r2);
+        state[3] = q2 ^ r2 ^ q7 ^ r7 ^ r3 ^ rotate32(q3 ^ r3);
+        state[4] = q3 ^ r3 ^ q7 ^ r7 ^ r4 ^ rotate32(q4 ^ r4);
+        state[5] = q4 ^ r4 ^ r5 ^ rotate32(q5 ^ r5);
+        state[6] = q5 ^ r5 ^ r6 ^ rotate32(q6 ^ r6);
+        state[7] = q6 ^ r6 ^ r7 ^ rotate32(q7 ^ r7);
+    }
+
+    /**
+     * Make InvMixColumns. InvMixColumns is MixColumns after adding x^2 * (a[i] + a[i + 2])
+     * to every row i; the multiplication moves the planes by 2, the planes 6 and 7 are reduced.
+     */
+    private void invMixColumns() {
+        long t0 = state[0] ^ rotate32(state[0]);
+        long t1 = state[1] ^ rotate32(state[1]);
+        long t2 = state[2] ^ rotate32(state[2]);
+        long t3 = state[3] ^ rotate32(state[3]);
+        long t4 = state[4] ^ rotate32(state[4]);
+        long t5 = state[5] ^ rotate32(state[5]);
+        long t6 = state[6] ^ rotate32(state[6]);
+        long t7 = state[7] ^ rotate32(state[7]);
+        state[0] ^= t6;
+        state[1] ^= t6 ^ t7;
+        state[2] ^= t0 ^ t7;
+        state[3] ^= t1 ^ t6;
+        state[4] ^= t2 ^ t6 ^ t7;
+        state[5] ^= t3 ^ t7;
+        state[6] ^= t4;
+        state[7] ^= t5;
+        mixColumns();
+    }
+
+    private static long rotate16(long x) {
+        return Long.rotateRight(x, 16);
+    }
+
+    private static long rotate32(long x) {
+        return Long.rotateRight(x, 32);
+    }
+
+    /**
+     * Pack one datablock into the state, the other 3 blocks are zero.
+     *
+     * @param in source array
+     * @param off index of the first byte of the datablock
+     */
+    private void load(byte[] in, int off) {
+        for (int i = 0; i < COLUMN_SIZE; i++, off += COLUMN_SIZE) {
+            words[i] = (in[off] & BIT_MASK) | ((in[off + 1] & BIT_MASK) << 8)
+                    | ((in[off + 2] & BIT_MASK) << 16) | ((in[off + 3] & BIT_MASK) << 24);
+        }
+        pack(1);
+    }
+
+    /**
+     * Unpack the first datablock of the state.
+     *
+     * @param out destination array
+     * @param off index of the first byte of the datablock
+     */
+    private void store(byte[] out, int off) {
+        unpack();
+        for (int i = 0; i < COLUMN_SIZE; i++, off += COLUMN_SIZE) {
+            out[off] = (byte)words[i];
+            out[off + 1] = (byte)(words[i] >>> 8);
+            out[off + 2] = (byte)(words[i] >>> 16);
+            out[off + 3] = (byte)(words[i] >>> 24);
+        }
+    }
+
+    /**
+     * Pack datablocks at the position of the buffer into the state, missing blocks are zero.
+     *
+     * @param in source buffer
+     * @param count count of datablocks, at most 4
+     */
+    private void load(ByteBuffer in, int count) {
+        int position = in.position();
+        boolean swap = in.order() != ByteOrder.LITTLE_ENDIAN;
+        for (int i = 0; i < count * COLUMN_SIZE; i++) {
+            int word = in.getInt(position + COLUMN_SIZE * i);
+            words[i] = swap ? Integer.reverseBytes(word) : word;
+        }
+        in.position(position + count * SIZE);
+        pack(count);
+    }
+
+    /**
+     * Unpack datablocks of the state to the position of the buffer.
+     *
+     * @param out destination buffer
+     * @param count count of datablocks, at most 4
+     */
+    private void store(ByteBuffer out, int count) {
+        unpack();
+        int position = out.position();
+        boolean swap = out.order() != ByteOrder.LITTLE_ENDIAN;
+        for (int i = 0; i < count * COLUMN_SIZE; i++) {
+            out.putInt(position + COLUMN_SIZE * i, swap ? Integer.reverseBytes(words[i]) : words[i]);
+        }
+        out.position(position + count * SIZE);
+    }
+
+    /**
+     * Bitslice the words of the datablocks into the state.
+     *
+     * @param count count of valid datablocks, the others are zero
+     */
+    private void pack(int count) {
+        for (int block = 0; block < BLOCKS; block++) {
+            int w = block * COLUMN_SIZE;
+            if (block < count) {
+                state[block] = Bitslice.interleave(words[w], words[w + 2]);
+                state[block + COLUMN_SIZE] = Bitslice.interleave(words[w + 1], words[w + 3]);
+            } else {
+                state[block] = 0;
+                state[block + COLUMN_SIZE] = 0;
+            }
+        }
+        Bitslice.orthogonalize(state, 0, 1);
+    }
+
+    /** Convert the state back into the words of all 4 datablocks. */
+    private void unpack() {
+        Bitslice.orthogonalize(state, 0, 1);
+        for (int block = 0; block < BLOCKS; block++) {
+            long even = state[block];
+            long odd = state[block + COLUMN_SIZE];
+            int w = block * COLUMN_SIZE;
+            words[w] = Bitslice.deinterleave(even);
+            words[w + 1] = Bitslice.deinterleave(odd);
+            words[w + 2] = Bitslice.deinterleave(even >>> 8);
+            words[w + 3] = Bitslice.deinterleave(odd >>> 8);
+        }
+    }
+}
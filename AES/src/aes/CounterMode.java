@@ -0,0 +1,86 @@
+package aes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code CounterMode} class implements CTR mode of operation.
+ * Counter block of the n-th data block is the initial counter block
+ * (IV) plus n as a 128-bit big-endian number, data are XORed with
+ * the encrypted counter blocks. Encryption and decryption are the same
+ * operation and every block is independent, so any range of the data
+ * can be processed separately.
+ * <p>
+ * Instance holds the block cipher and the buffers for the keystream,
+ * so it must not be shared by several threads.
+ */
+public class CounterMode {
+    private static final int KEYSTREAM_BLOCKS = 64; // count of counter blocks encrypted at once
+
+    private final BlockCipher cipher;
+    private long ivHigh; // most significant half of the initial counter block
+    private long ivLow;  // least significant half of the initial counter block
+    private final ByteBuffer counters = ByteBuffer.allocate(KEYSTREAM_BLOCKS * BlockCipher.BLOCK_SIZE);
+    private final ByteBuffer keystream = ByteBuffer.allocate(KEYSTREAM_BLOCKS * BlockCipher.BLOCK_SIZE);
+
+    /**
+     * Create CTR mode.
+     *
+     * @param cipher used block cipher, not shared with other threads
+     * @param iv initial counter block, 16 bytes
+     */
+    public CounterMode(BlockCipher cipher, byte[] iv) {
+        this.cipher = cipher;
+        setInitialCounter(iv);
+    }
+
+    /**
+     * Change the initial counter block, so the instance
+     * can be reused for another message.
+     *
+     * @param iv initial counter block, 16 bytes
+     */
+    public void setInitialCounter(byte[] iv) {
+        if (iv.length != BlockCipher.BLOCK_SIZE)
+            throw new IllegalArgumentException("Initial counter block has to have " + BlockCipher.BLOCK_SIZE + " bytes.");
+        ByteBuffer buffer = ByteBuffer.wrap(iv);
+        this.ivHigh = buffer.getLong();
+        this.ivLow = buffer.getLong();
+    }
+
+    /**
+     * Encrypt/decrypt data from the position to the limit of the buffer in place.
+     * The position of the buffer is moved to the limit.
+     *
+     * @param blockIndex index of the data block at the position of the buffer
+     * @param data buffer with the data
+     */
+    public void apply(long blockIndex, ByteBuffer data) {
+        keystream.order(data.order()); // XOR of the words has to use the same byte order
+        while (data.hasRemaining()) {
+            int count = Math.min(data.remaining(), keystream.capacity());
+            int blocks = (count + BlockCipher.BLOCK_SIZE - 1) / BlockCipher.BLOCK_SIZE;
+
+            // prepare counter blocks and encrypt them
+            counters.clear();
+            for (int i = 0; i < blocks; i++, blockIndex++) {
+                long low = ivLow + blockIndex;
+                long high = (Long.compareUnsigned(low, ivLow) < 0) ? ivHigh + 1 : ivHigh; // carry
+                counters.putLong(high).putLong(low);
+            }
+            counters.flip();
+            keystream.clear();
+            cipher.encryptBlocks(counters, keystream, blocks);
+
+            // XOR data with the keystream, by 8 bytes and then the rest byte by byte
+            int position = data.position();
+            int i = 0;
+            for (; i + Long.BYTES <= count; i += Long.BYTES) {
+                data.putLong(position + i, data.getLong(position + i) ^ keystream.getLong(i));
+            }
+            for (; i < count; i++) {
+                data.put(position + i, (byte)(data.get(position + i) ^ keystream.get(i)));
+            }
+            data.position(position + count);
+        }
+    }
+}
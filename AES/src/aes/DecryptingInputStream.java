@@ -0,0 +1,196 @@
+package aes;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code DecryptingInputStream} class reads the binary ciphertext in ECB
+ * (see {@link CipherFileHeader}) from the underlying stream and returns the
+ * plaintext. Ciphertext of unknown length (see {@link EncryptingOutputStream})
+ * has the PKCS#7 padding, which is checked and removed, so the last complete
+ * block is held back until the next data or the end of the stream arrives.
+ * Ciphertext of known length is cut to the length from the header.
+ */
+public class DecryptingInputStream extends FilterInputStream {
+    /** Default size of the chunk of the ciphertext. */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final BlockCipher cipher;
+    private final byte[] buffer;  // ciphertext, decrypted blocks are at the beginning
+    private final ByteBuffer input;  // view of the buffer read by the cipher
+    private final ByteBuffer output; // view of the buffer written by the cipher
+    private final byte[] single = new byte[1]; // for reading of one byte
+    private final boolean padded; // true = PKCS#7 padding, false = length from the header
+    private long remaining;       // bytes of the plaintext which were not decrypted yet, known length only
+    private int position;         // next byte of the plaintext to be returned
+    private int ready;            // end of the decrypted plaintext in the buffer
+    private int decrypted;        // end of the decrypted blocks in the buffer
+    private int count;            // end of the ciphertext in the buffer
+    private boolean finished;     // true = end of the underlying stream was processed
+
+    /**
+     * Create a stream with the default size of the chunk and read the header.
+     *
+     * @param in stream with the ciphertext
+     * @param cipher used block cipher
+     * @throws IOException if the header is not valid or exception during reading
+     */
+    public DecryptingInputStream(InputStream in, BlockCipher cipher) throws IOException {
+        this(in, cipher, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a stream and read the header.
+     *
+     * @param in stream with the ciphertext
+     * @param cipher used block cipher
+     * @param bufferSize size of the chunk, rounded down to a multiple of 16 bytes
+     * @throws IOException if the header is not valid or exception during reading
+     */
+    public DecryptingInputStream(InputStream in, BlockCipher cipher, int bufferSize) throws IOException {
+        this(in, cipher, allocate(bufferSize));
+    }
+
+    /**
+     * Create a stream with a buffer of the caller, e.g. from a pool, and read the header.
+     *
+     * @param in stream with the ciphertext
+     * @param cipher used block cipher
+     * @param buffer buffer of the chunk, a multiple of 16 bytes and at least 2 blocks,
+     *               the caller must not use it until the stream is read
+     * @throws IOException if the header is not valid or exception during reading
+     */
+    public DecryptingInputStream(InputStream in, BlockCipher cipher, byte[] buffer) throws IOException {
+        super(in);
+        if (buffer.length % BlockCipher.BLOCK_SIZE != 0 || buffer.length < 2 * BlockCipher.BLOCK_SIZE)
+            throw new IllegalArgumentException("Buffer has to have a multiple of " + BlockCipher.BLOCK_SIZE
+                    + " bytes, at least " + 2 * BlockCipher.BLOCK_SIZE + ".");
+        this.cipher = cipher;
+        this.buffer = buffer;
+        this.input = ByteBuffer.wrap(buffer);
+        this.output = ByteBuffer.wrap(buffer);
+
+        CipherFileHeader header = CipherFileHeader.read(new DataInputStream(in));
+        if (header.getMode() != CipherMode.ECB)
+            throw new IOException("Unsupported mode: " + header.getMode());
+        this.padded = header.getLength() == CipherFileHeader.UNKNOWN_LENGTH;
+        this.remaining = header.getLength();
+    }
+
+    /**
+     * Allocate a buffer of the chunk.
+     *
+     * @param bufferSize size of the chunk, rounded down to a multiple of 16 bytes
+     * @return the buffer
+     */
+    private static byte[] allocate(int bufferSize) {
+        int size = bufferSize - bufferSize % BlockCipher.BLOCK_SIZE;
+        if (size < 2 * BlockCipher.BLOCK_SIZE)
+            throw new IllegalArgumentException("Buffer has to have at least " + 2 * BlockCipher.BLOCK_SIZE + " bytes.");
+        return new byte[size];
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        while (position == ready) {
+            if (!fill())
+                return -1;
+        }
+        int n = Math.min(len, ready - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            if (position == ready && !fill())
+                break;
+            int step = (int)Math.min(n - skipped, ready - position);
+            position += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return ready - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Read more ciphertext and decrypt complete blocks. The last complete
+     * block of the padded ciphertext is decrypted only at the end of the stream.
+     *
+     * @return false at the end of the plaintext
+     * @throws IOException if the ciphertext is not valid or exception during reading
+     */
+    private boolean fill() throws IOException {
+        if (finished || (!padded && remaining == 0))
+            return false;
+        // move the undecrypted rest (less than 2 blocks) to the beginning
+        System.arraycopy(buffer, decrypted, buffer, 0, count - decrypted);
+        count -= decrypted;
+        position = ready = decrypted = 0;
+
+        int n;
+        while ((n = in.read(buffer, count, buffer.length - count)) >= 0) {
+            count += n;
+            int end = count - count % BlockCipher.BLOCK_SIZE;
+            if (padded && end == count) // keep the lookahead block, it may be the last one
+                end -= BlockCipher.BLOCK_SIZE;
+            if (end > 0) {
+                decrypt(end);
+                return true;
+            }
+        }
+
+        // end of the stream, the last block (if any) is in the buffer
+        finished = true;
+        if (count % BlockCipher.BLOCK_SIZE != 0 || (padded && count == 0) || (!padded && remaining > 0))
+            throw new EOFException("Ciphertext is truncated.");
+        if (!padded)
+            return false;
+        decrypt(count);
+        ready = Padding.PKCS7.unpad(buffer, 0, count);
+        return ready > 0;
+    }
+
+    /**
+     * Decrypt blocks at the beginning of the buffer.
+     *
+     * @param end end of the decrypted blocks
+     */
+    private void decrypt(int end) {
+        long time = CipherMetrics.start();
+        input.clear();
+        output.clear();
+        cipher.decryptBlocks(input, output, end / BlockCipher.BLOCK_SIZE);
+        CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, end);
+        decrypted = end;
+        ready = end;
+        if (remaining >= 0) { // known length, the rest of the last block is filled by zeros
+            if (ready > remaining)
+                ready = (int)remaining;
+            remaining -= ready;
+        }
+    }
+}
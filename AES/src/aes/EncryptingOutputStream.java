@@ -0,0 +1,172 @@
+package aes;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code EncryptingOutputStream} class encrypts everything written to it
+ * and writes the binary ciphertext (see {@link CipherFileHeader}) to the
+ * underlying stream. Length of the plaintext is not known in advance, so the
+ * header holds {@link CipherFileHeader#UNKNOWN_LENGTH} and the last block is
+ * padded by PKCS#7, i.e. 1 to 16 bytes with the count of the added bytes.
+ * Memory does not depend on the length of the data, only a partial block and
+ * one chunk of the ciphertext are buffered.
+ */
+public class EncryptingOutputStream extends FilterOutputStream {
+    /** Default size of the chunk of the ciphertext. */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final BlockCipher cipher;
+    private final byte[] buffer;  // encrypted blocks waiting for writing
+    private final ByteBuffer input;  // view of the buffer read by the cipher
+    private final ByteBuffer output; // view of the buffer written by the cipher
+    private final byte[] single = new byte[1]; // for writing of one byte
+    private int count;            // bytes in the buffer, only the last block may be incomplete
+    private boolean finished;     // true = padding was written
+
+    /**
+     * Create a stream with the default size of the chunk and write the header.
+     *
+     * @param out stream for the ciphertext
+     * @param cipher used block cipher
+     * @throws IOException exception during writing of the header
+     */
+    public EncryptingOutputStream(OutputStream out, BlockCipher cipher) throws IOException {
+        this(out, cipher, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a stream and write the header.
+     *
+     * @param out stream for the ciphertext
+     * @param cipher used block cipher
+     * @param bufferSize size of the chunk, rounded down to a multiple of 16 bytes
+     * @throws IOException exception during writing of the header
+     */
+    public EncryptingOutputStream(OutputStream out, BlockCipher cipher, int bufferSize) throws IOException {
+        this(out, cipher, allocate(bufferSize));
+    }
+
+    /**
+     * Create a stream with a buffer of the caller, e.g. from a pool, and write the header.
+     *
+     * @param out stream for the ciphertext
+     * @param cipher used block cipher
+     * @param buffer buffer of the chunk, a multiple of 16 bytes and at least the header,
+     *               the caller must not use it until the stream is finished
+     * @throws IOException exception during writing of the header
+     */
+    public EncryptingOutputStream(OutputStream out, BlockCipher cipher, byte[] buffer) throws IOException {
+        super(out);
+        if (buffer.length % BlockCipher.BLOCK_SIZE != 0 || buffer.length < CipherFileHeader.SIZE)
+            throw new IllegalArgumentException("Buffer has to have a multiple of " + BlockCipher.BLOCK_SIZE
+                    + " bytes, at least " + CipherFileHeader.SIZE + ".");
+        this.cipher = cipher;
+        this.buffer = buffer;
+        this.input = ByteBuffer.wrap(buffer);
+        this.output = ByteBuffer.wrap(buffer);
+
+        new CipherFileHeader(CipherMode.ECB, CipherFileHeader.UNKNOWN_LENGTH,
+                new byte[CipherFileHeader.IV_SIZE]).write(ByteBuffer.wrap(buffer));
+        out.write(buffer, 0, CipherFileHeader.SIZE);
+    }
+
+    /**
+     * Allocate a buffer of the chunk.
+     *
+     * @param bufferSize size of the chunk, rounded down to a multiple of 16 bytes
+     * @return the buffer, at least the header
+     */
+    private static byte[] allocate(int bufferSize) {
+        int size = bufferSize - bufferSize % BlockCipher.BLOCK_SIZE;
+        if (size <= 0)
+            throw new IllegalArgumentException("Buffer has to have at least " + BlockCipher.BLOCK_SIZE + " bytes.");
+        return new byte[Math.max(size, CipherFileHeader.SIZE)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte)b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished)
+            throw new IOException("Stream is finished.");
+        while (len > 0) {
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            // encrypt blocks completed by the new data
+            int start = count - count % BlockCipher.BLOCK_SIZE;
+            count += n;
+            int end = count - count % BlockCipher.BLOCK_SIZE;
+            long time = CipherMetrics.start();
+            input.position(start);
+            output.position(start);
+            cipher.encryptBlocks(input, output, (end - start) / BlockCipher.BLOCK_SIZE);
+            CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, end - start);
+            if (count == buffer.length) {
+                time = CipherMetrics.start();
+                out.write(buffer, 0, count);
+                CipherMetrics.stop(CipherMetrics.Stage.WRITE, time, count);
+                count = 0;
+            }
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Write the encrypted complete blocks to the underlying stream and flush it.
+     * The incomplete last block stays in the buffer.
+     *
+     * @throws IOException exception during writing
+     */
+    @Override
+    public void flush() throws IOException {
+        int complete = count - count % BlockCipher.BLOCK_SIZE;
+        out.write(buffer, 0, complete);
+        System.arraycopy(buffer, complete, buffer, 0, count - complete);
+        count -= complete;
+        out.flush();
+    }
+
+    /**
+     * Pad and encrypt the last block and write all remaining data, the underlying
+     * stream stays open. Nothing can be written after this method.
+     *
+     * @throws IOException exception during writing
+     */
+    public void finish() throws IOException {
+        if (finished)
+            return;
+        // the buffer is never full here, so the padded block always fits
+        int last = count - count % BlockCipher.BLOCK_SIZE;
+        count = last + Padding.PKCS7.pad(buffer, last, count - last);
+        long time = CipherMetrics.start();
+        cipher.encryptBlock(buffer, count - BlockCipher.BLOCK_SIZE, buffer, count - BlockCipher.BLOCK_SIZE);
+        CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, BlockCipher.BLOCK_SIZE);
+        out.write(buffer, 0, count);
+        count = 0;
+        finished = true;
+        out.flush();
+    }
+
+    /**
+     * Finish the ciphertext and close the underlying stream.
+     *
+     * @throws IOException exception during writing
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        }
+        finally {
+            out.close();
+        }
+    }
+}
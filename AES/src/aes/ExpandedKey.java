@@ -0,0 +1,171 @@
+package aes;
+
+/**
+ * The {@code ExpandedKey} class holds all round keys generated from the initial
+ * key. Round keys are stored as flat arrays of 32-bit words, one word per column
+ * with the first byte of the column as the most significant one. The schedule for
+ * decryption is the one of the equivalent inverse cipher, i.e. round keys are in
+ * the reversed order and the inner ones are transformed by InvMixColumns.
+ * <p>
+ * Instances are immutable, so one expanded key can be shared by any number
+ * of threads, each of them using its own {@link BlockCipher}.
+ */
+public final class ExpandedKey {
+    private static final int COLUMN_SIZE = 4; // size of the column/row
+    private static final int BIT_MASK = 255; // mask to create 8bit integer
+
+    private final int[] encryptionKey; // round keys for encryption
+    private final int[] decryptionKey; // round keys for the equivalent inverse cipher
+    private final int rounds; // count of rounds, 10, 12 or 14
+
+    private ExpandedKey(int[] encryptionKey, int[] decryptionKey, int rounds) {
+        this.encryptionKey = encryptionKey;
+        this.decryptionKey = decryptionKey;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Check if the length is a valid length of the key.
+     *
+     * @param length length of the key in bytes
+     * @return true for 16, 24 and 32 bytes (AES-128, AES-192, AES-256)
+     */
+    public static boolean isValidLength(int length) {
+        return length == 16 || length == 24 || length == 32;
+    }
+
+    /**
+     * Expand a key given as characters, each character is one byte of the key
+     * (see {@link KeyMaterial#parse(String)}).
+     *
+     * @param key initial key, 16, 24 or 32 characters
+     * @return expanded key
+     * @throws IllegalArgumentException if the key has a wrong length
+     */
+    public static ExpandedKey of(String key) {
+        return of(KeyMaterial.fromCharacters(key));
+    }
+
+    /**
+     * Expand a key. Length of the key determines count of rounds,
+     * 10 rounds for 16 bytes, 12 rounds for 24 bytes and 14 rounds for 32 bytes.
+     *
+     * @param key initial key, 16, 24 or 32 bytes
+     * @return expanded key
+     * @throws IllegalArgumentException if the key has a wrong length
+     */
+    public static ExpandedKey of(byte[] key) {
+        if (!isValidLength(key.length))
+            throw new IllegalArgumentException("Key length has to be 16, 24 or 32 bytes.");
+        CipherMetrics.keyExpanded();
+        int nk = key.length / COLUMN_SIZE; // count of columns of the initial key
+        int rounds = nk + 6;
+        int[] rk = new int[COLUMN_SIZE * (rounds + 1)];
+
+        // Save an initial key
+        for (int i = 0; i < nk; i++) {
+            rk[i] = ((key[4 * i] & BIT_MASK) << 24) | ((key[4 * i + 1] & BIT_MASK) << 16)
+                    | ((key[4 * i + 2] & BIT_MASK) << 8) | (key[4 * i + 3] & BIT_MASK);
+        }
+
+        int tmp;
+        for (int i = nk; i < rk.length; i++) {  // generate all other keys
+            tmp = rk[i - 1];
+            if (i % nk == 0) // rotate, substitute and XOR the round constant into the leftmost byte
+                tmp = subWord(Integer.rotateLeft(tmp, 8)) ^ (AdvancedEncryptionStandard.RCON[i / nk - 1] << 24);
+            else if (nk > 6 && i % nk == COLUMN_SIZE) // 256-bit key substitutes also the middle column
+                tmp = subWord(tmp);
+            rk[i] = rk[i - nk] ^ tmp;
+        }
+
+        // Reverse the order of the keys for decryption
+        int[] dk = new int[rk.length];
+        for (int round = 0; round <= rounds; round++) {
+            System.arraycopy(rk, (rounds - round) * COLUMN_SIZE, dk, round * COLUMN_SIZE, COLUMN_SIZE);
+        }
+        // Apply InvMixColumns to all keys except the first and the last one
+        for (int i = COLUMN_SIZE; i < rounds * COLUMN_SIZE; i++) {
+            dk[i] = invMixColumn(dk[i]);
+        }
+        return new ExpandedKey(rk, dk, rounds);
+    }
+
+    /**
+     * Get round keys for encryption. The array is shared, it must not be modified.
+     *
+     * @return round keys, 4 words per round
+     */
+    int[] encryptionKey() {
+        return encryptionKey;
+    }
+
+    /**
+     * Get round keys for the equivalent inverse cipher. The array is shared, it must not be modified.
+     *
+     * @return round keys, 4 words per round
+     */
+    int[] decryptionKey() {
+        return decryptionKey;
+    }
+
+    /**
+     * Get count of rounds.
+     *
+     * @return count of rounds, 10, 12 or 14
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Substitution of all bytes of the word by S-Box for encryption. The bytes are
+     * bitsliced (bit i of the byte j is the bit j of the plane i) and substituted by
+     * the Boolean circuit, so the key does not select any memory address.
+     *
+     * @param word input word
+     * @return substituted word
+     */
+    private static int subWord(int word) {
+        long[] q = new long[Bitslice.PLANES];
+        for (int i = 0; i < Bitslice.PLANES; i++) {
+            for (int j = 0; j < COLUMN_SIZE; j++) {
+                q[i] |= (long)((word >>> (8 * j + i)) & 1) << j;
+            }
+        }
+        Bitslice.subBytes(q);
+        int result = 0;
+        for (int i = 0; i < Bitslice.PLANES; i++) {
+            for (int j = 0; j < COLUMN_SIZE; j++) {
+                result |= (int)((q[i] >>> j) & 1) << (8 * j + i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Make InvMixColumns of one column, i.e. multiplication
+     * by the matrix for decryption in GF(2^8). The round keys are secret,
+     * so the tables of {@link GaloisField} are not used.
+     *
+     * @param word column as a word
+     * @return new column
+     */
+    private static int invMixColumn(int word) {
+        int a0 = word >>> 24, a1 = (word >>> 16) & BIT_MASK, a2 = (word >>> 8) & BIT_MASK, a3 = word & BIT_MASK;
+        return (multiply(a0, 14) ^ multiply(a1, 11) ^ multiply(a2, 13) ^ multiply(a3, 9)) << 24
+                | (multiply(a0, 9) ^ multiply(a1, 14) ^ multiply(a2, 11) ^ multiply(a3, 13)) << 16
+                | (multiply(a0, 13) ^ multiply(a1, 9) ^ multiply(a2, 14) ^ multiply(a3, 11)) << 8
+                | (multiply(a0, 11) ^ multiply(a1, 13) ^ multiply(a2, 9) ^ multiply(a3, 14));
+    }
+
+    /**
+     * Multiplicate a byte of the key by a constant in Galois Field 2^8 in constant time.
+     *
+     * @param a byte of the key
+     * @param b constant of the matrix
+     * @return result of multiplication
+     */
+    private static int multiply(int a, int b) {
+        return GaloisField.multiplyConstantTime(a, b);
+    }
+}
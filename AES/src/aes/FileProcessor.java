@@ -0,0 +1,30 @@
+package aes;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The {@code FileProcessor} interface is implemented by the classes
+ * which encrypt/decrypt whole files in the binary format
+ * (see {@link CipherFileHeader}).
+ */
+public interface FileProcessor {
+
+    /**
+     * Encrypt a plaintext file into the binary ciphertext file.
+     *
+     * @param source plaintext file
+     * @param target ciphertext file
+     * @throws IOException exception during reading/writing file
+     */
+    void encrypt(Path source, Path target) throws IOException;
+
+    /**
+     * Decrypt a binary ciphertext file.
+     *
+     * @param source ciphertext file
+     * @param target plaintext file
+     * @throws IOException if the ciphertext file is not valid or exception during reading/writing file
+     */
+    void decrypt(Path source, Path target) throws IOException;
+}
@@ -0,0 +1,138 @@
+package aes;
+
+/**
+ * The {@code GHash} class implements the universal hash function of GCM,
+ * i.e. multiplication by the hash subkey H in GF(2^128) with the polynomial
+ * x^128 + x^7 + x^2 + x + 1. Multiplication is table-driven: for every byte
+ * position of the block there is a table of all 256 products of that byte
+ * with H, so the product of a block is XOR of 16 looked up values.
+ * <p>
+ * Blocks are represented by two longs, the first one holds bytes 0..7
+ * and the second one bytes 8..15, both in big-endian byte order. Instances
+ * are immutable, the running hash is kept by the caller, so one instance
+ * can be shared by several threads.
+ */
+public final class GHash {
+    private static final int BLOCK_SIZE = 16; // size of the block in bytes
+    private static final long R = 0xe100000000000000L; // reduction constant, 11100001 || 0^120
+
+    /** Products of H, 16 byte positions * 256 values * 2 longs. */
+    private final long[] table = new long[BLOCK_SIZE * 256 * 2];
+
+    /**
+     * Create the hash function for the hash subkey.
+     *
+     * @param h hash subkey, i.e. encrypted zero block, 16 bytes
+     */
+    public GHash(byte[] h) {
+        // products of H with all single bits, bit 0 is the most significant bit of the byte 0
+        long[] bits = new long[2 * 8 * BLOCK_SIZE];
+        long high = readLong(h, 0);
+        long low = readLong(h, 8);
+        for (int i = 0; i < 8 * BLOCK_SIZE; i++) {
+            bits[2 * i] = high;
+            bits[2 * i + 1] = low;
+            // multiply by x, i.e. shift right and reduce
+            boolean carry = (low & 1) != 0;
+            low = (low >>> 1) | (high << 63);
+            high >>>= 1;
+            if (carry)
+                high ^= R;
+        }
+
+        // products with all values of each byte, a byte is XOR of its bits
+        for (int position = 0; position < BLOCK_SIZE; position++) {
+            int base = position * 256 * 2;
+            for (int value = 1; value < 256; value++) {
+                int lowest = Integer.numberOfTrailingZeros(value); // 0 = least significant bit of the byte
+                int bit = 8 * position + 7 - lowest;
+                int rest = base + 2 * (value & (value - 1));
+                table[base + 2 * value] = table[rest] ^ bits[2 * bit];
+                table[base + 2 * value + 1] = table[rest + 1] ^ bits[2 * bit + 1];
+            }
+        }
+    }
+
+    /**
+     * Multiply the block by H in place.
+     *
+     * @param y block, y[0] bytes 0..7 and y[1] bytes 8..15
+     */
+    public void multiply(long[] y) {
+        long high = 0;
+        long low = 0;
+        long word = y[0];
+        for (int position = 0; position < 8; position++) {
+            int index = 2 * (position * 256 + (int)((word >>> (56 - 8 * position)) & 0xff));
+            high ^= table[index];
+            low ^= table[index + 1];
+        }
+        word = y[1];
+        for (int position = 8; position < BLOCK_SIZE; position++) {
+            int index = 2 * (position * 256 + (int)((word >>> (120 - 8 * position)) & 0xff));
+            high ^= table[index];
+            low ^= table[index + 1];
+        }
+        y[0] = high;
+        y[1] = low;
+    }
+
+    /**
+     * Add data into the running hash. Incomplete last block is filled by zeros.
+     *
+     * @param y running hash, updated in place
+     * @param data data
+     * @param off index of the first byte
+     * @param len count of bytes
+     */
+    public void update(long[] y, byte[] data, int off, int len) {
+        int end = off + len;
+        for (; off + BLOCK_SIZE <= end; off += BLOCK_SIZE) {
+            y[0] ^= readLong(data, off);
+            y[1] ^= readLong(data, off + 8);
+            multiply(y);
+        }
+        if (off < end) {
+            long high = 0;
+            long low = 0;
+            for (int i = 0; off + i < end; i++) {
+                long b = data[off + i] & 0xffL;
+                if (i < 8)
+                    high |= b << (56 - 8 * i);
+                else
+                    low |= b << (120 - 8 * i);
+            }
+            y[0] ^= high;
+            y[1] ^= low;
+            multiply(y);
+        }
+    }
+
+    /**
+     * Add the final block with lengths of the additional data and the ciphertext.
+     *
+     * @param y running hash, updated in place
+     * @param aadLength length of the additional authenticated data in bytes
+     * @param dataLength length of the ciphertext in bytes
+     */
+    public void finish(long[] y, long aadLength, long dataLength) {
+        y[0] ^= aadLength * 8;
+        y[1] ^= dataLength * 8;
+        multiply(y);
+    }
+
+    /**
+     * Read 8 bytes as a big-endian long.
+     *
+     * @param data source array
+     * @param off index of the first byte
+     * @return read value
+     */
+    static long readLong(byte[] data, int off) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[off + i] & 0xffL);
+        }
+        return value;
+    }
+}
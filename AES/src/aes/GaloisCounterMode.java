@@ -0,0 +1,150 @@
+package aes;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * The {@code GaloisCounterMode} class implements GCM, i.e. CTR encryption
+ * with an authentication tag computed by {@link GHash} over the additional
+ * authenticated data and the ciphertext. Nonce has 96 bits, so the initial
+ * counter block is the nonce followed by the 32-bit counter 1.
+ * <p>
+ * Instance holds the block cipher and buffers, so it must not be shared
+ * by several threads. The {@link GHash} can be shared.
+ */
+public class GaloisCounterMode {
+    /** Size of the nonce in bytes. */
+    public static final int NONCE_SIZE = 12;
+    /** Size of the authentication tag in bytes. */
+    public static final int TAG_SIZE = 16;
+
+    private static final int SCRATCH_SIZE = 4096; // size of the copy of data from the direct buffers
+
+    private final BlockCipher cipher;
+    private final GHash ghash;
+    private final CounterMode ctr;
+    private final byte[] counterBlock = new byte[BlockCipher.BLOCK_SIZE];
+    private final byte[] mask = new byte[BlockCipher.BLOCK_SIZE]; // encrypted initial counter block
+    private final long[] hash = new long[2]; // running GHASH
+    private final byte[] expected = new byte[TAG_SIZE]; // computed tag during decryption
+    private final byte[] actual = new byte[TAG_SIZE];   // received tag during decryption
+    private byte[] scratch; // copy of data which are not in an array
+
+    /**
+     * Create GCM.
+     *
+     * @param cipher used block cipher, not shared with other threads
+     * @param ghash hash function for the key of the cipher, see {@link #createHash(BlockCipher)}
+     */
+    public GaloisCounterMode(BlockCipher cipher, GHash ghash) {
+        this.cipher = cipher;
+        this.ghash = ghash;
+        this.ctr = new CounterMode(cipher, counterBlock);
+    }
+
+    /**
+     * Create the hash function for the key, the hash subkey is the encrypted zero block.
+     *
+     * @param cipher block cipher with the key
+     * @return hash function
+     */
+    public static GHash createHash(BlockCipher cipher) {
+        byte[] h = new byte[BlockCipher.BLOCK_SIZE];
+        cipher.encryptBlock(h, 0, h, 0);
+        return new GHash(h);
+    }
+
+    /**
+     * Encrypt data from the position to the limit of the buffer in place
+     * and compute the authentication tag. Position of the buffer is moved
+     * to the limit.
+     *
+     * @param nonce nonce, 12 bytes, never used twice with the same key
+     * @param aad additional authenticated data
+     * @param data buffer with the data
+     * @param tag array for the authentication tag
+     * @param tagOff index of the first byte of the tag
+     */
+    public void encrypt(byte[] nonce, byte[] aad, ByteBuffer data, byte[] tag, int tagOff) {
+        int position = data.position();
+        init(nonce);
+        ctr.apply(0, data);
+        data.position(position);
+        authenticate(aad, data, tag, tagOff);
+    }
+
+    /**
+     * Check the authentication tag and if it is valid, decrypt data from the position
+     * to the limit of the buffer in place. Position of the buffer is moved to the limit.
+     *
+     * @param nonce nonce, 12 bytes
+     * @param aad additional authenticated data
+     * @param data buffer with the ciphertext
+     * @param tag array with the authentication tag
+     * @param tagOff index of the first byte of the tag
+     * @return true if the tag is valid and data were decrypted, false if data were not changed
+     */
+    public boolean decrypt(byte[] nonce, byte[] aad, ByteBuffer data, byte[] tag, int tagOff) {
+        int position = data.position();
+        init(nonce);
+        authenticate(aad, data, expected, 0);
+        System.arraycopy(tag, tagOff, actual, 0, TAG_SIZE);
+        if (!MessageDigest.isEqual(expected, actual)) // constant-time comparison
+            return false;
+        data.position(position);
+        ctr.apply(0, data);
+        return true;
+    }
+
+    /**
+     * Prepare counter blocks for the nonce.
+     *
+     * @param nonce nonce, 12 bytes
+     */
+    private void init(byte[] nonce) {
+        if (nonce.length != NONCE_SIZE)
+            throw new IllegalArgumentException("Nonce has to have " + NONCE_SIZE + " bytes.");
+        System.arraycopy(nonce, 0, counterBlock, 0, NONCE_SIZE);
+        counterBlock[12] = 0;
+        counterBlock[13] = 0;
+        counterBlock[14] = 0;
+        counterBlock[15] = 1;
+        cipher.encryptBlock(counterBlock, 0, mask, 0); // J0 masks the tag
+        counterBlock[15] = 2;   // data start with the counter 2
+        ctr.setInitialCounter(counterBlock);
+    }
+
+    /**
+     * Compute the authentication tag of the ciphertext. Position of the buffer is moved to the limit.
+     *
+     * @param aad additional authenticated data
+     * @param data buffer with the ciphertext
+     * @param tag array for the authentication tag
+     * @param tagOff index of the first byte of the tag
+     */
+    private void authenticate(byte[] aad, ByteBuffer data, byte[] tag, int tagOff) {
+        int length = data.remaining();
+        hash[0] = 0;
+        hash[1] = 0;
+        ghash.update(hash, aad, 0, aad.length);
+        if (data.hasArray()) {
+            ghash.update(hash, data.array(), data.arrayOffset() + data.position(), length);
+            data.position(data.limit());
+        }
+        else {
+            if (scratch == null)
+                scratch = new byte[SCRATCH_SIZE];
+            while (data.hasRemaining()) { // SCRATCH_SIZE is a multiple of 16, so only the last block may be partial
+                int count = Math.min(data.remaining(), SCRATCH_SIZE);
+                data.get(scratch, 0, count);
+                ghash.update(hash, scratch, 0, count);
+            }
+        }
+        ghash.finish(hash, aad.length, length);
+
+        for (int i = 0; i < BlockCipher.BLOCK_SIZE; i++) {
+            long word = hash[i / 8];
+            tag[tagOff + i] = (byte)(mask[i] ^ (word >>> (56 - 8 * (i % 8))));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package aes;
+
+/**
+ * The {@code GaloisField} class provides arithmetic in the Galois Field 2^8 of AES
+ * (polynomial x^8 + x^4 + x^3 + x + 1). Multiplication by the constants
+ * of MixColumns (2, 3) and InvMixColumns (9, 11, 13, 14) is a single lookup
+ * into a table indexed directly by the byte. All tables are generated once
+ * when the class is initialized.
+ * <p>
+ * Lookups select the memory address by the byte, so they must not be used
+ * with the bytes of the key, see {@link #multiplyConstantTime(int, int)}.
+ */
+public final class GaloisField {
+    private static final int SIZE = 256; // count of elements of the field
+    private static final int BIT_MASK = 255; // mask to create 8bit integer
+    private static final int POLYNOMIAL = 0x11b; // x^8 + x^4 + x^3 + x + 1
+
+    /** Multiplication by 2 indexed directly by the byte */
+    static final int[] MUL2 = new int[SIZE];
+    /** Multiplication by 3 indexed directly by the byte */
+    static final int[] MUL3 = new int[SIZE];
+    /** Multiplication by 9 indexed directly by the byte */
+    static final int[] MUL9 = new int[SIZE];
+    /** Multiplication by 11 indexed directly by the byte */
+    static final int[] MUL11 = new int[SIZE];
+    /** Multiplication by 13 indexed directly by the byte */
+    static final int[] MUL13 = new int[SIZE];
+    /** Multiplication by 14 indexed directly by the byte */
+    static final int[] MUL14 = new int[SIZE];
+
+    static {
+        for (int a = 0; a < SIZE; a++) {
+            int a2 = xtime(a);
+            int a4 = xtime(a2);
+            int a8 = xtime(a4);
+            MUL2[a] = a2;
+            MUL3[a] = a2 ^ a;
+            MUL9[a] = a8 ^ a;
+            MUL11[a] = a8 ^ a2 ^ a;
+            MUL13[a] = a8 ^ a4 ^ a;
+            MUL14[a] = a8 ^ a4 ^ a2;
+        }
+    }
+
+    private GaloisField() {
+    }
+
+    /**
+     * Multiplicate two bytes without any lookup and without a branch on the first byte,
+     * so the time does not depend on it. Used for the bytes derived from the key.
+     *
+     * @param a first byte, e.g. secret
+     * @param b second byte, public constant, the count of iterations depends on it
+     * @return product
+     */
+    public static int multiplyConstantTime(int a, int b) {
+        int p = 0;
+        for (; b != 0; b >>>= 1) {
+            p ^= a & -(b & 1);
+            a = (a << 1) ^ (POLYNOMIAL & -(a >>> 7)); // reduce with polynomial x^8 + x^4 + x^3 + x + 1
+        }
+        return p;
+    }
+
+    /**
+     * Multiply a byte by 2, used only to generate the tables.
+     *
+     * @param a byte value
+     * @return result of multiplication
+     */
+    private static int xtime(int a) {
+        a <<= 1;
+        if (a > BIT_MASK)   // reduce with polynomial x^8 + x^4 + x^3 + x + 1
+            a ^= POLYNOMIAL;
+        return a;
+    }
+}
@@ -0,0 +1,339 @@
+package aes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * The {@code GcmFileProcessor} class encrypts/decrypts whole files in the binary
+ * format (see {@link CipherFileHeader}) in GCM. Plaintext is split into segments
+ * of {@link #SEGMENT_SIZE} bytes and every segment is encrypted and authenticated
+ * separately (STREAM construction), the ciphertext of each segment is followed
+ * by its tag. Nonce of the segment is made of the random prefix from the header,
+ * index of the segment and a flag of the last segment, so segments cannot be
+ * reordered, and the file cannot be truncated or extended. The header is
+ * authenticated as additional data of every segment.
+ * <p>
+ * Segments are independent, so they are processed in parallel by the tasks
+ * of the {@link ForkJoinPool} and a modified segment is detected without
+ * reading the rest of the file.
+ */
+public class GcmFileProcessor implements FileProcessor {
+    /** Size of the plaintext of one segment, 64 KiB. */
+    public static final int SEGMENT_SIZE = 1 << 16;
+    /** Size of the random prefix of the nonces. */
+    public static final int NONCE_PREFIX_SIZE = 7;
+
+    private static final int SEGMENTS_PER_TASK = 16; // minimal count of segments processed by a single task
+    private static final int TASKS_PER_THREAD = 4;   // more tasks than threads for balancing of the work
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** Operations with the segments. */
+    private enum Operation { ENCRYPT, DECRYPT, VERIFY }
+
+    private final Supplier<BlockCipher> ciphers; // creates a block cipher for every task
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a processor using the common pool.
+     *
+     * @param ciphers creates a new instance of the block cipher with the key
+     */
+    public GcmFileProcessor(Supplier<BlockCipher> ciphers) {
+        this(ciphers, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a processor.
+     *
+     * @param ciphers creates a new instance of the block cipher with the key
+     * @param pool pool running the tasks
+     */
+    public GcmFileProcessor(Supplier<BlockCipher> ciphers, ForkJoinPool pool) {
+        this.ciphers = ciphers;
+        this.pool = pool;
+    }
+
+    /**
+     * Encrypt a plaintext file into the binary ciphertext file
+     * with a random prefix of the nonces.
+     *
+     * @param source plaintext file
+     * @param target ciphertext file
+     * @throws IOException exception during reading/writing file
+     */
+    @Override
+    public void encrypt(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = ChannelFileProcessor.openOutput(target)) {
+            byte[] iv = new byte[CipherFileHeader.IV_SIZE];
+            byte[] prefix = new byte[NONCE_PREFIX_SIZE];
+            RANDOM.nextBytes(prefix);
+            System.arraycopy(prefix, 0, iv, 0, NONCE_PREFIX_SIZE);
+            CipherFileHeader header = new CipherFileHeader(CipherMode.GCM, in.size(), iv);
+            ByteBuffer buffer = ByteBuffer.allocate(CipherFileHeader.SIZE);
+            header.write(buffer);
+            buffer.flip();
+            ChannelFileProcessor.writeFully(out, buffer);
+
+            run(Operation.ENCRYPT, header, in, out);
+        }
+    }
+
+    /**
+     * Verify and decrypt a binary ciphertext file in GCM. If some segment
+     * is not authentic, the output file is deleted.
+     *
+     * @param source ciphertext file
+     * @param target plaintext file
+     * @throws IntegrityException if the ciphertext file was modified
+     * @throws IOException if the ciphertext file is not valid or exception during reading/writing file
+     */
+    @Override
+    public void decrypt(Path source, Path target) throws IOException {
+        try {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = ChannelFileProcessor.openOutput(target)) {
+                run(Operation.DECRYPT, readHeader(in), in, out);
+            }
+        }
+        catch (IntegrityException e) {
+            Files.deleteIfExists(target); // never leave unauthenticated plaintext
+            throw e;
+        }
+    }
+
+    /**
+     * Verify all segments of a binary ciphertext file in GCM without writing the plaintext.
+     *
+     * @param source ciphertext file
+     * @throws IntegrityException if the ciphertext file was modified
+     * @throws IOException if the ciphertext file is not valid or exception during reading file
+     */
+    public void verify(Path source) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            run(Operation.VERIFY, readHeader(in), in, null);
+        }
+    }
+
+    /**
+     * Get count of the segments of the plaintext, there is always at least one segment.
+     *
+     * @param length length of the plaintext
+     * @return count of the segments
+     */
+    public static long segmentCount(long length) {
+        return Math.max(1, (length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+    }
+
+    /**
+     * Get length of the ciphertext, i.e. the plaintext and the tags of all segments.
+     *
+     * @param length length of the plaintext
+     * @return length of the ciphertext without the header
+     */
+    public static long ciphertextLength(long length) {
+        return length + segmentCount(length) * GaloisCounterMode.TAG_SIZE;
+    }
+
+    /**
+     * Create the nonce of a segment, i.e. the prefix, 32-bit index
+     * of the segment and the flag of the last segment.
+     *
+     * @param iv initialization vector from the header, begins with the prefix
+     * @param index index of the segment
+     * @param last true for the last segment
+     * @param nonce array for the nonce, 12 bytes
+     */
+    static void segmentNonce(byte[] iv, long index, boolean last, byte[] nonce) {
+        System.arraycopy(iv, 0, nonce, 0, NONCE_PREFIX_SIZE);
+        nonce[7] = (byte)(index >>> 24);
+        nonce[8] = (byte)(index >>> 16);
+        nonce[9] = (byte)(index >>> 8);
+        nonce[10] = (byte)index;
+        nonce[11] = (byte)(last ? 1 : 0);
+    }
+
+    /**
+     * Read and check the header of the ciphertext file.
+     *
+     * @param in channel at the beginning of the file
+     * @return read header
+     * @throws IOException if the file is not in GCM or it has a wrong length
+     */
+    private static CipherFileHeader readHeader(FileChannel in) throws IOException {
+        CipherFileHeader header = ChannelFileProcessor.readHeader(in);
+        if (header.getMode() != CipherMode.GCM)
+            throw new IOException("Unsupported mode: " + header.getMode());
+        if (segmentCount(header.getLength()) > 0xffffffffL)
+            throw new IOException("Invalid length of the plaintext: " + header.getLength());
+        long expected = CipherFileHeader.SIZE + ciphertextLength(header.getLength());
+        if (in.size() < expected)
+            throw new EOFException("Ciphertext file is truncated.");
+        if (in.size() > expected)
+            throw new IntegrityException("Ciphertext file has unexpected data after the last segment.");
+        return header;
+    }
+
+    /**
+     * Process all segments in parallel.
+     *
+     * @param operation operation with the segments
+     * @param header header of the ciphertext file
+     * @param in input channel
+     * @param out output channel, null for verification
+     * @throws IOException exception during reading/writing file or modified ciphertext
+     */
+    private void run(Operation operation, CipherFileHeader header, FileChannel in, FileChannel out) throws IOException {
+        long segments = segmentCount(header.getLength());
+        long threshold = Math.max(SEGMENTS_PER_TASK, segments / ((long)pool.getParallelism() * TASKS_PER_THREAD));
+        ByteBuffer aad = ByteBuffer.allocate(CipherFileHeader.SIZE);
+        header.write(aad);
+        SegmentTask task = new SegmentTask(operation, header, aad.array(), GaloisCounterMode.createHash(ciphers.get()),
+                in, out, 0, segments, threshold, new AtomicBoolean());
+        try {
+            pool.invoke(task);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The {@code SegmentTask} processes a range of the segments,
+     * large range is split into two halves.
+     */
+    private class SegmentTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Operation operation;
+        private final CipherFileHeader header;
+        private final byte[] aad;         // header as additional authenticated data
+        private final GHash ghash;
+        private final FileChannel in;
+        private final FileChannel out;
+        private final long start;         // index of the first segment
+        private final long end;           // index after the last segment
+        private final long threshold;     // maximal count of segments processed without splitting
+        private final AtomicBoolean failed; // set by the first failed task, the others stop
+
+        SegmentTask(Operation operation, CipherFileHeader header, byte[] aad, GHash ghash, FileChannel in,
+                    FileChannel out, long start, long end, long threshold, AtomicBoolean failed) {
+            this.operation = operation;
+            this.header = header;
+            this.aad = aad;
+            this.ghash = ghash;
+            this.in = in;
+            this.out = out;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > threshold) {
+                long middle = start + (end - start) / 2;
+                invokeAll(new SegmentTask(operation, header, aad, ghash, in, out, start, middle, threshold, failed),
+                        new SegmentTask(operation, header, aad, ghash, in, out, middle, end, threshold, failed));
+                return;
+            }
+
+            CipherMetrics.queued(pool.getQueuedTaskCount());
+            GaloisCounterMode gcm = new GaloisCounterMode(ciphers.get(), ghash);
+            ByteBuffer buffer = ByteBuffer.allocate(SEGMENT_SIZE + GaloisCounterMode.TAG_SIZE);
+            byte[] iv = header.getIv();
+            byte[] nonce = new byte[GaloisCounterMode.NONCE_SIZE];
+            long length = header.getLength();
+            long segments = segmentCount(length);
+            try {
+                for (long index = start; index < end && !failed.get(); index++) {
+                    long plainOffset = index * SEGMENT_SIZE;
+                    long cipherOffset = CipherFileHeader.SIZE + index * (SEGMENT_SIZE + GaloisCounterMode.TAG_SIZE);
+                    int size = (int)Math.min(SEGMENT_SIZE, length - plainOffset);
+                    segmentNonce(iv, index, index == segments - 1, nonce);
+
+                    buffer.clear();
+                    long time = CipherMetrics.start();
+                    if (operation == Operation.ENCRYPT) {
+                        buffer.limit(size);
+                        readFully(in, buffer, plainOffset);
+                        CipherMetrics.stop(CipherMetrics.Stage.READ, time, size);
+                        buffer.flip();
+                        time = CipherMetrics.start();
+                        gcm.encrypt(nonce, aad, buffer, buffer.array(), size);
+                        CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, size);
+                        buffer.limit(size + GaloisCounterMode.TAG_SIZE);
+                        buffer.position(0);
+                        time = CipherMetrics.start();
+                        writeFully(out, buffer, cipherOffset);
+                        CipherMetrics.stop(CipherMetrics.Stage.WRITE, time, size + GaloisCounterMode.TAG_SIZE);
+                    }
+                    else {
+                        buffer.limit(size + GaloisCounterMode.TAG_SIZE);
+                        readFully(in, buffer, cipherOffset);
+                        CipherMetrics.stop(CipherMetrics.Stage.READ, time, size + GaloisCounterMode.TAG_SIZE);
+                        buffer.flip();
+                        buffer.limit(size);
+                        time = CipherMetrics.start();
+                        if (!gcm.decrypt(nonce, aad, buffer, buffer.array(), size)) {
+                            failed.set(true);
+                            throw new IntegrityException("Segment " + index + " failed authentication.");
+                        }
+                        CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, size);
+                        if (operation == Operation.DECRYPT) {
+                            buffer.flip();
+                            time = CipherMetrics.start();
+                            writeFully(out, buffer, plainOffset);
+                            CipherMetrics.stop(CipherMetrics.Stage.WRITE, time, size);
+                        }
+                    }
+                }
+            }
+            catch (IOException e) {
+                failed.set(true);
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Read from the position of the channel until the buffer is full.
+         *
+         * @param channel source channel
+         * @param buffer destination buffer
+         * @param position position in the channel
+         * @throws IOException exception during reading or end of the file
+         */
+        private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0)
+                    throw new EOFException("Input file is truncated.");
+            }
+        }
+
+        /**
+         * Write all remaining bytes of the buffer to the position of the channel.
+         *
+         * @param channel destination channel
+         * @param buffer source buffer
+         * @param position position in the channel
+         * @throws IOException exception during writing
+         */
+        private void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package aes;
+
+/**
+ * The {@code Hex} class converts bytes from/to hexadecimal form used
+ * in the text files, i.e. every byte is written as two hexadecimal digits
+ * followed by a space.
+ */
+public final class Hex {
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    private static final int CHARS_PER_BYTE = 3; // two digits and a space
+
+    private Hex() {
+    }
+
+    /**
+     * Write bytes in hexadecimal form into a character array.
+     *
+     * @param src source bytes
+     * @param off index of the first byte
+     * @param len count of bytes
+     * @param dst destination array, has to have place for {@code 3 * len} characters
+     * @param dstOff index of the first character in the destination array
+     * @return count of written characters
+     */
+    public static int format(byte[] src, int off, int len, char[] dst, int dstOff) {
+        int j = dstOff;
+        for (int i = off; i < off + len; i++) {
+            dst[j++] = DIGITS[(src[i] >> 4) & 0x0f];
+            dst[j++] = DIGITS[src[i] & 0x0f];
+            dst[j++] = ' ';
+        }
+        return j - dstOff;
+    }
+
+    /**
+     * Convert bytes into hexadecimal form.
+     *
+     * @param src source bytes
+     * @param off index of the first byte
+     * @param len count of bytes
+     * @return bytes in hexadecimal form
+     */
+    public static String toString(byte[] src, int off, int len) {
+        char[] chars = new char[CHARS_PER_BYTE * len];
+        format(src, off, len, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Parse hexadecimal numbers separated by spaces.
+     *
+     * @param line line with hexadecimal numbers
+     * @param dst destination array
+     * @param dstOff index of the first byte in the destination array
+     * @return count of parsed bytes
+     * @throws NumberFormatException if the line contains invalid number or more numbers
+     *                               than fit into the destination array
+     */
+    public static int parse(CharSequence line, byte[] dst, int dstOff) {
+        int j = dstOff;
+        int value = 0;
+        int digits = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                if (digits > 0)
+                    j = put(dst, j, value, line);
+                value = 0;
+                digits = 0;
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0 || ++digits > 2)
+                throw new NumberFormatException("Invalid hexadecimal number in: " + line);
+            value = (value << 4) | digit;
+        }
+        if (digits > 0)
+            j = put(dst, j, value, line);
+        return j - dstOff;
+    }
+
+    /**
+     * Store one parsed byte.
+     *
+     * @param dst destination array
+     * @param index index of the byte in the destination array
+     * @param value the byte
+     * @param line parsed line, for the message
+     * @return index of the next byte
+     * @throws NumberFormatException if the destination array is full
+     */
+    private static int put(byte[] dst, int index, int value, CharSequence line) {
+        if (index >= dst.length)
+            throw new NumberFormatException("Too many hexadecimal numbers in: " + line);
+        dst[index] = (byte)value;
+        return index + 1;
+    }
+}
@@ -0,0 +1,20 @@
+package aes;
+
+import java.io.IOException;
+
+/**
+ * The {@code IntegrityException} is thrown when authenticated ciphertext
+ * was modified, i.e. the authentication tag does not match.
+ */
+public class IntegrityException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Create the exception.
+     *
+     * @param message description of the failure
+     */
+    public IntegrityException(String message) {
+        super(message);
+    }
+}
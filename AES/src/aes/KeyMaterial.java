@@ -0,0 +1,110 @@
+package aes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The {@code KeyMaterial} class converts keys entered by the user
+ * or stored in the files into bytes. Valid keys have 16, 24 or 32 bytes.
+ */
+public final class KeyMaterial {
+    /** Prefix of the key given as hexadecimal digits. */
+    public static final String HEX_PREFIX = "hex:";
+
+    private KeyMaterial() {
+    }
+
+    /**
+     * Convert a key entered as text. Key starting with {@code hex:} is
+     * made of hexadecimal digits, otherwise every character is one byte.
+     *
+     * @param text the key
+     * @return bytes of the key
+     * @throws IllegalArgumentException if the key is not valid
+     */
+    public static byte[] parse(String text) {
+        byte[] key;
+        if (text.regionMatches(true, 0, HEX_PREFIX, 0, HEX_PREFIX.length()))
+            key = parseHex(text.substring(HEX_PREFIX.length()));
+        else
+            key = fromCharacters(text);
+        return check(key);
+    }
+
+    /**
+     * Convert a key given as characters, every character is one byte
+     * (its lower 8 bits, as the original key expansion took it).
+     *
+     * @param text the key
+     * @return bytes of the key, the length is not checked
+     */
+    static byte[] fromCharacters(String text) {
+        byte[] key = new byte[text.length()];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte)text.charAt(i);
+        }
+        return key;
+    }
+
+    /**
+     * Convert a key made of hexadecimal digits, two digits per byte.
+     *
+     * @param hex the key
+     * @return bytes of the key
+     * @throws IllegalArgumentException if the key is not valid
+     */
+    public static byte[] parseHex(String hex) {
+        hex = hex.trim();
+        if (hex.length() % 2 != 0)
+            throw new IllegalArgumentException("Hexadecimal key has to have even count of digits.");
+        byte[] key = new byte[hex.length() / 2];
+        for (int i = 0; i < key.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0)
+                throw new IllegalArgumentException("Invalid hexadecimal digit in the key.");
+            key[i] = (byte)((high << 4) | low);
+        }
+        return check(key);
+    }
+
+    /**
+     * Read a raw binary key from the file.
+     *
+     * @param file file with the key
+     * @return bytes of the key
+     * @throws IOException exception during reading file
+     * @throws IllegalArgumentException if the key is not valid
+     */
+    public static byte[] readFile(Path file) throws IOException {
+        return check(Files.readAllBytes(file));
+    }
+
+    /**
+     * Read a key from the environment variable, the value is converted by {@link #parse(String)}.
+     *
+     * @param name name of the environment variable
+     * @return bytes of the key
+     * @throws IllegalArgumentException if the variable is not set or the key is not valid
+     */
+    public static byte[] fromEnvironment(String name) {
+        String value = System.getenv(name);
+        if (value == null)
+            throw new IllegalArgumentException("Environment variable " + name + " is not set.");
+        return parse(value);
+    }
+
+    /**
+     * Check length of the key.
+     *
+     * @param key bytes of the key
+     * @return the same key
+     * @throws IllegalArgumentException if the key has a wrong length
+     */
+    private static byte[] check(byte[] key) {
+        if (!ExpandedKey.isValidLength(key.length))
+            throw new IllegalArgumentException("Key length has to be 16, 24 or 32 bytes.");
+        return key;
+    }
+}
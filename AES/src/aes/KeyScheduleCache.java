@@ -0,0 +1,144 @@
+package aes;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code KeyScheduleCache} class keeps recently used expanded keys,
+ * so a service working with a limited set of keys does not have to expand
+ * a key for every request. The cache is bounded, the least recently used
+ * key is removed when the capacity is exceeded. All methods are thread-safe,
+ * a missing key is expanded outside the lock, so it does not block other requests.
+ * <p>
+ * Next to the expanded key, the cache keeps idle instances of the cipher
+ * (see {@link #acquire(byte[], CipherEngine)}), because some engines transform
+ * the round keys again for every created instance.
+ */
+public class KeyScheduleCache {
+    /** Default count of cached keys. */
+    public static final int DEFAULT_CAPACITY = 512;
+    private static final int IDLE_CIPHERS = 16; // idle instances of the cipher kept per key and engine
+
+    private final Map<ByteBuffer, CachedKey> keys; // initial key -> cached key, in access order, guarded by itself
+
+    /** Create a cache with the default capacity. */
+    public KeyScheduleCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param capacity maximal count of cached keys
+     */
+    public KeyScheduleCache(final int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity has to be positive.");
+        this.keys = new LinkedHashMap<ByteBuffer, CachedKey>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, CachedKey> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get an expanded key, the key is expanded only if it is not in the cache.
+     *
+     * @param key initial key
+     * @return expanded key
+     * @throws IllegalArgumentException if the key has a wrong length
+     */
+    public ExpandedKey get(byte[] key) {
+        return entry(key).key;
+    }
+
+    /**
+     * Get an instance of the cipher with the key. An idle instance returned by
+     * {@link #release(byte[], CipherEngine, BlockCipher)} is reused, otherwise
+     * a new one is created. The instance is used only by the caller until it is released.
+     *
+     * @param key initial key
+     * @param engine engine of the cipher
+     * @return instance of the cipher
+     * @throws IllegalArgumentException if the key has a wrong length
+     */
+    public BlockCipher acquire(byte[] key, CipherEngine engine) {
+        CachedKey entry = entry(key);
+        BlockCipher cipher = entry.idle(engine).poll();
+        return cipher != null ? cipher : engine.create(entry.key);
+    }
+
+    /**
+     * Return an instance of the cipher for the next {@link #acquire(byte[], CipherEngine)}.
+     * It is dropped if the key was removed from the cache or enough instances are idle.
+     *
+     * @param key initial key
+     * @param engine engine of the cipher
+     * @param cipher instance of the cipher, the caller does not use it anymore
+     */
+    public void release(byte[] key, CipherEngine engine, BlockCipher cipher) {
+        CachedKey entry;
+        synchronized (keys) {
+            entry = keys.get(ByteBuffer.wrap(key));
+        }
+        if (entry != null)
+            entry.idle(engine).offer(cipher);
+    }
+
+    /**
+     * Get count of keys currently in the cache.
+     *
+     * @return count of keys
+     */
+    public int size() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    /**
+     * Get the cached key, the key is expanded only if it is not in the cache.
+     *
+     * @param key initial key
+     * @return cached key
+     * @throws IllegalArgumentException if the key has a wrong length
+     */
+    private CachedKey entry(byte[] key) {
+        CachedKey entry;
+        synchronized (keys) {
+            entry = keys.get(ByteBuffer.wrap(key));
+        }
+        CipherMetrics.cacheRequest(entry != null);
+        if (entry != null)
+            return entry;
+        entry = new CachedKey(ExpandedKey.of(key));
+        ByteBuffer id = ByteBuffer.wrap(key.clone()); // the caller may change the array later
+        synchronized (keys) { // other thread may have expanded the same key meanwhile
+            CachedKey previous = keys.putIfAbsent(id, entry);
+            return previous != null ? previous : entry;
+        }
+    }
+
+    /**
+     * The {@code CachedKey} class is an expanded key with the idle instances of the cipher.
+     */
+    private static final class CachedKey {
+        final ExpandedKey key;
+        final Map<CipherEngine, BlockingQueue<BlockCipher>> idle = new ConcurrentHashMap<>(); // idle instances
+
+        CachedKey(ExpandedKey key) {
+            this.key = key;
+        }
+
+        BlockingQueue<BlockCipher> idle(CipherEngine engine) {
+            return idle.computeIfAbsent(engine, e -> new ArrayBlockingQueue<>(IDLE_CIPHERS));
+        }
+    }
+}
@@ -0,0 +1,724 @@
+package aes;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The {@code Main} is a main class which process input arguments,
+ * load mode (encryption/decryption) and key, read data from the file
+ * and encrypted/decrypted data save to another file.
+ */
+public class Main {
+
+    public static BufferedInputStream bis = null;       // for reading bytes in encryption
+    public static BufferedOutputStream bos = null;      // for writing bytes in decryption
+    public static BufferedReader br = null;             // for reading lines in decryption
+    public static PrintWriter pw = null;                // for writing lines in encryption
+    public static Scanner sc = new Scanner(System.in);
+    public static PrintStream console = System.out;    // messages for the user, standard error if data go to standard output
+
+    private static final String STANDARD_STREAM = "-"; // name of the file for standard input/output
+
+    private static boolean encryption = true; // true = encryption, false = decryption
+    private static boolean modeGiven = false; // true = mode was given by an option, do not ask for it
+    private static byte[] key;  // encryption/decryption key, 16, 24 or 32 bytes
+    private static File keyFile = null; // file with a raw binary key, null = enter the key
+    private static String keyVariable = null; // environment variable with the key, null = enter the key
+    private static File inputFile = null;
+    private static File outputFile = null;
+    private static CipherEngine engine = CipherEngine.TABLE; // implementation of the cipher
+    private static boolean hexFormat = false; // true = legacy text file with hexadecimal numbers
+    private static Padding padding = Padding.PKCS7; // padding of the last block in the hexadecimal format
+    private static boolean mapped = false; // true = binary files are processed as memory-mapped files
+    private static boolean pipelined = false; // true = reading, cipher and writing of ECB run in parallel
+    private static CipherMode cipherMode = CipherMode.ECB; // mode of operation for encryption
+    private static boolean verification = false; // true = only verify a GCM ciphertext file
+    private static long[] range = null; // offset and length of the decrypted part of the plaintext, null = all
+    private static int threads = Runtime.getRuntime().availableProcessors(); // threads for parallel modes
+    private static boolean batch = false; // true = non-interactive processing of many files
+    private static File outputDirectory = null; // output directory of the batch
+    private static File listFile = null; // file with names of the input files of the batch, one per line
+    private static int jobs = Runtime.getRuntime().availableProcessors(); // files processed at the same time
+    private static boolean metrics = false; // true = print a summary of the metrics at the end
+    private static int serverPort = -1; // port of the cipher server, -1 = no server
+    private static ForkJoinPool pool; // threads for parallel modes
+    private static ExpandedKey expandedKey; // expanded key shared by all instances of the cipher
+    // pipelined processor of each thread (batch worker), its buffers are reused for all files of the thread
+    private static final ThreadLocal<PipelinedFileProcessor> PIPELINES =
+            ThreadLocal.withInitial(() -> new PipelinedFileProcessor(() -> engine.create(expandedKey), threads));
+    private static BlockCipher aes;
+
+    /** The main launching procedure of the program.
+     * @param args options followed by name of the input and output files
+     */
+    public static void main(String[] args) {
+        List<String> files;
+        try {
+            files = loadOptions(args);
+        }
+        catch (IllegalArgumentException e) {
+            console.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (batch) {
+            runBatch(files);
+            return;
+        }
+        if (serverPort >= 0) {
+            runServer();
+            return;
+        }
+        if (files.size() < (verification ? 1 : 2)) {
+            console.println("Too few arguments!\nArguments: [options] [input filename] [output filename]");
+            console.println("Filename - is the standard input/output, e.g. for pipelines.");
+            console.println("Options:\n\t--engine=NAME             implementation of the cipher: table (default), reference, vector, constant-time");
+            console.println("\t--format=binary|hex       format of the ciphertext file (default binary)");
+            console.println("\t--padding=pkcs7|zero      padding of the hex format (default pkcs7, zero for old files)");
+            console.println("\t--mmap                    map binary files into memory, for very large files");
+            console.println("\t--pipeline                read, encrypt and write ECB files in parallel stages");
+            console.println("\t--cipher-mode=ecb|ctr|gcm mode of operation for encryption (default ecb)");
+            console.println("\t--threads=N               count of threads for CTR, GCM and --pipeline (default all cores)");
+            console.println("\t--encrypt, --decrypt       mode given by an option instead of the question");
+            console.println("\t--range=OFFSET:LENGTH     decrypt only a part of the plaintext from a binary file");
+            console.println("\t--verify                  only verify a GCM ciphertext file, output file is not used");
+            console.println("\t--key-file=FILE           read a raw binary key (16, 24 or 32 bytes) from the file");
+            console.println("\t--key-env=NAME            read the key (as entered, hex: allowed) from the environment variable");
+            console.println("\t--metrics[=N]             print time of the stages at the end, time one of N chunks (default 1)");
+            console.println("Batch: --batch=encrypt|decrypt --output-dir=DIR [--list=FILE] [--jobs=N] [options] [files and directories]");
+            console.println("\t--batch=encrypt|decrypt   process files and directory trees without any questions");
+            console.println("\t--output-dir=DIR          output directory, relative paths of the files are kept");
+            console.println("\t--list=FILE               read names of the input files from the file, one per line");
+            console.println("\t--jobs=N                  count of files processed at the same time (default all cores)");
+            console.println("Server: --serve=PORT [--key-file=FILE|--key-env=NAME] [--engine=NAME]");
+            console.println("\t--serve=PORT              encrypt/decrypt bodies of POST /encrypt and /decrypt on localhost");
+            System.exit(1);
+        }
+
+        boolean standardInput = files.get(0).equals(STANDARD_STREAM);
+        boolean standardOutput = !verification && files.get(1).equals(STANDARD_STREAM);
+        if (standardOutput)
+            console = System.err; // keep the data on the standard output clean
+        if (standardInput && (!modeGiven || (keyFile == null && keyVariable == null))) {
+            console.println("Data are read from the standard input, so the mode (--encrypt/--decrypt) "
+                    + "and the key (--key-file/--key-env) have to be given by options.");
+            System.exit(1);
+        }
+        if (range != null && (standardInput || hexFormat)) {
+            console.println("Range can be decrypted only from a binary ciphertext file.");
+            System.exit(1);
+        }
+        if ((standardInput || standardOutput) && hexFormat) {
+            console.println("Hexadecimal format cannot be used with the standard input/output.");
+            System.exit(1);
+        }
+
+        if (!verification && !modeGiven)
+            loadMode(); // choose between encryption and decryption
+        if (range != null && encryption) {
+            console.println("Range can be used only for decryption.");
+            System.exit(1);
+        }
+        if ((standardInput || standardOutput) && encryption && cipherMode != CipherMode.ECB) {
+            console.println("Only ECB can be used with the standard input/output.");
+            System.exit(1);
+        }
+        if (keyFile != null || keyVariable != null) {
+            if (!readKey())
+                System.exit(1);
+        }
+        else
+            loadKey();  // load a key
+        createCipher();
+
+        boolean failed = false; // true = exit status 1, so pipelines and scripts see the error
+        try {
+            inputFile = standardInput ? null : new File(files.get(0));
+            if (verification) {
+                verifyCiphertext();
+                return;
+            }
+            outputFile = standardOutput ? null : new File(files.get(1));
+
+            if (range != null)
+                decryptRange();
+            else if (standardInput || standardOutput) {
+                if (encryption)
+                    encryptStream();
+                else
+                    decryptStream();
+            }
+            else if (encryption) {
+                if (hexFormat)
+                    encryptPlaintextHex();
+                else
+                    encryptPlaintext();
+            }
+            else {
+                if (hexFormat)
+                    decryptCiphertextHex();
+                else
+                    decryptCiphertext();
+            }
+        }
+        catch (FileNotFoundException e1) {
+            console.println("File not found.");
+            failed = true;
+        }
+        catch (IntegrityException e4) {
+            console.println("Ciphertext file is not authentic, it was modified or the key is wrong.");
+            console.println(e4.getMessage());
+            failed = true;
+        }
+        catch (IOException e2) {
+            console.println("Occured some problems while reading/writing file.");
+            if (e2.getMessage() != null)
+                console.println(e2.getMessage());
+            failed = true;
+        }
+        finally {
+            try {
+                if (bis != null)
+                    bis.close();
+                if (bos != null)
+                    bos.close();
+                if (br != null)
+                    br.close();
+                if (pw != null)
+                    pw.close();
+            }
+            catch (IOException e3) {
+                console.println("Problems while closing file.");
+                failed = true;
+            }
+            if (metrics)
+                CipherMetrics.report(console);
+        }
+        if (failed)
+            System.exit(1);
+    }
+
+    /**
+     * Process options of the program, i.e. arguments starting with "--".
+     *
+     * @param args all arguments of the program
+     * @return remaining arguments, which are not options
+     * @throws IllegalArgumentException if some option is not valid
+     */
+    public static List<String> loadOptions(String[] args) {
+        List<String> rest = new ArrayList<>();
+        engine = CipherEngine.getDefault(); // deployment default, the option overrides it
+        for (String arg : args) {
+            if (arg.startsWith("--engine="))
+                engine = CipherEngine.fromName(arg.substring("--engine=".length()));
+            else if (arg.startsWith("--format="))
+                hexFormat = loadFormat(arg.substring("--format=".length()));
+            else if (arg.startsWith("--padding="))
+                padding = Padding.fromName(arg.substring("--padding=".length()));
+            else if (arg.equals("--mmap"))
+                mapped = true;
+            else if (arg.equals("--pipeline"))
+                pipelined = true;
+            else if (arg.startsWith("--cipher-mode="))
+                cipherMode = CipherMode.fromName(arg.substring("--cipher-mode=".length()));
+            else if (arg.equals("--encrypt") || arg.equals("--decrypt")) {
+                modeGiven = true;
+                encryption = arg.equals("--encrypt");
+            }
+            else if (arg.startsWith("--range="))
+                range = loadRange(arg.substring("--range=".length()));
+            else if (arg.equals("--verify"))
+                verification = true;
+            else if (arg.startsWith("--threads="))
+                threads = loadCount(arg.substring("--threads=".length()));
+            else if (arg.startsWith("--key-file="))
+                keyFile = new File(arg.substring("--key-file=".length()));
+            else if (arg.startsWith("--key-env="))
+                keyVariable = arg.substring("--key-env=".length());
+            else if (arg.startsWith("--batch=")) {
+                batch = true;
+                encryption = loadBatchMode(arg.substring("--batch=".length()));
+            }
+            else if (arg.startsWith("--output-dir="))
+                outputDirectory = new File(arg.substring("--output-dir=".length()));
+            else if (arg.startsWith("--list="))
+                listFile = new File(arg.substring("--list=".length()));
+            else if (arg.startsWith("--serve="))
+                serverPort = loadPort(arg.substring("--serve=".length()));
+            else if (arg.startsWith("--jobs="))
+                jobs = loadCount(arg.substring("--jobs=".length()));
+            else if (arg.equals("--metrics") || arg.startsWith("--metrics=")) {
+                metrics = true;
+                CipherMetrics.setSampling(arg.equals("--metrics") ? 1 : loadCount(arg.substring("--metrics=".length())));
+            }
+            else if (arg.startsWith("--"))
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            else
+                rest.add(arg);
+        }
+        return rest;
+    }
+
+    /**
+     * Process a name of the ciphertext file format.
+     *
+     * @param format name of the format
+     * @return true if the format is the legacy hexadecimal text
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    private static boolean loadFormat(String format) {
+        if (format.equalsIgnoreCase("hex"))
+            return true;
+        if (format.equalsIgnoreCase("binary"))
+            return false;
+        throw new IllegalArgumentException("Unknown format: " + format);
+    }
+
+    /**
+     * Process a mode of the batch.
+     *
+     * @param mode name of the mode
+     * @return true for encryption, false for decryption
+     * @throws IllegalArgumentException if the mode is unknown
+     */
+    private static boolean loadBatchMode(String mode) {
+        if (mode.equalsIgnoreCase("encrypt"))
+            return true;
+        if (mode.equalsIgnoreCase("decrypt"))
+            return false;
+        throw new IllegalArgumentException("Unknown batch mode: " + mode);
+    }
+
+    /**
+     * Process a range of the plaintext, i.e. offset and length separated by a colon.
+     *
+     * @param value value of the option
+     * @return offset and length
+     * @throws IllegalArgumentException if the range is not valid
+     */
+    private static long[] loadRange(String value) {
+        int colon = value.indexOf(':');
+        try {
+            long offset = Long.parseLong(value.substring(0, Math.max(colon, 0)));
+            long length = Long.parseLong(value.substring(colon + 1));
+            if (offset >= 0 && length >= 0)
+                return new long[] { offset, length };
+        }
+        catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid range: " + value);
+    }
+
+    /**
+     * Process a positive number from the option.
+     *
+     * @param value value of the option
+     * @return the number
+     * @throws IllegalArgumentException if the value is not a positive number
+     */
+    private static int loadCount(String value) {
+        int count;
+        try {
+            count = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            count = 0;
+        }
+        if (count <= 0)
+            throw new IllegalArgumentException("Invalid number: " + value);
+        return count;
+    }
+
+    /**
+     * Process a port of the server from the option.
+     *
+     * @param value value of the option
+     * @return the port, 0 = any free port
+     * @throws IllegalArgumentException if the value is not a valid port
+     */
+    private static int loadPort(String value) {
+        int port;
+        try {
+            port = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            port = -1;
+        }
+        if (port < 0 || port > 65535)
+            throw new IllegalArgumentException("Invalid port: " + value);
+        return port;
+    }
+
+    /** Let the user choose a mode, encryption or decryption. */
+    public static void loadMode() {
+        console.println("Choose a mode:\n\te = encryption\n\td = decryption");
+        String mode;
+        while ((mode = sc.nextLine()).matches("[^ed]")) {
+            console.println("Incorrect mode.");
+            console.println("\te = encryption\n\td = decryption");
+        }
+        if (mode.equals("d"))
+            encryption = false;
+    }
+
+    /** Let the user enter a key, either as characters
+     * or as hexadecimal digits prefixed by "hex:".
+     */
+    public static void loadKey() {
+        console.print("Key (16, 24 or 32 characters, or hex: and 32, 48 or 64 digits): ");
+        while (true) {
+            try {
+                key = KeyMaterial.parse(sc.nextLine());
+                return;
+            }
+            catch (IllegalArgumentException e) {
+                console.println(e.getMessage());
+                console.print("Key (16, 24 or 32 characters, or hex: and 32, 48 or 64 digits): ");
+            }
+        }
+    }
+
+    /**
+     * Read the key from the key file or from the environment variable.
+     *
+     * @return true if the key is valid
+     */
+    private static boolean readKey() {
+        try {
+            if (keyFile != null)
+                key = KeyMaterial.readFile(keyFile.toPath());
+            else
+                key = KeyMaterial.fromEnvironment(keyVariable);
+            return true;
+        }
+        catch (IOException | IllegalArgumentException e) {
+            console.println("Invalid key " + (keyFile != null ? "file" : "variable") + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Expand the key and create the cipher and the pool of threads for parallel modes. */
+    private static void createCipher() {
+        if (engine == CipherEngine.VECTOR && !VectorEngineLoader.isAvailable())
+            console.println("Vector engine is not available (run with --add-modules jdk.incubator.vector), "
+                    + "table engine is used.");
+        expandedKey = ExpandedKey.of(key);
+        aes = engine.create(expandedKey);
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Encrypt/decrypt many files without any questions, the key is taken from
+     * the key file or from the environment variable. Timings of the files
+     * are printed at the end, the exit status is 1 if some file failed.
+     *
+     * @param files names of the input files and directories
+     */
+    private static void runBatch(List<String> files) {
+        if (keyFile == null && keyVariable == null) {
+            console.println("Batch needs the key in a file (--key-file) or in an environment variable (--key-env).");
+            System.exit(1);
+        }
+        if (outputDirectory == null) {
+            console.println("Batch needs the output directory (--output-dir).");
+            System.exit(1);
+        }
+        if (!readKey())
+            System.exit(1);
+
+        List<Path> inputs = new ArrayList<>();
+        for (String file : files) {
+            inputs.add(Path.of(file));
+        }
+        try {
+            if (listFile != null) {
+                for (String line : Files.readAllLines(listFile.toPath(), StandardCharsets.UTF_8)) {
+                    if (!line.isBlank())
+                        inputs.add(Path.of(line.trim()));
+                }
+            }
+            if (inputs.isEmpty()) {
+                console.println("No input files.");
+                System.exit(1);
+            }
+
+            createCipher();
+            BatchProcessor.warmUp(aes);
+            BatchProcessor processor = new BatchProcessor(Main::createProcessor, jobs);
+            long start = System.nanoTime();
+            List<BatchProcessor.Result> results;
+            if (encryption)
+                results = processor.encrypt(inputs, outputDirectory.toPath(), cipherMode);
+            else
+                results = processor.decrypt(inputs, outputDirectory.toPath());
+            BatchProcessor.report(results, System.nanoTime() - start, console);
+            if (metrics)
+                CipherMetrics.report(console);
+            if (results.stream().anyMatch(result -> !result.isSuccessful()))
+                System.exit(1);
+        }
+        catch (IOException e) {
+            console.println("Occured some problems while reading/writing file.");
+            if (e.getMessage() != null)
+                console.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Run the cipher server on the loopback interface until the process is stopped.
+     * The key from the key file or from the environment variable is used by the requests
+     * without their own key.
+     */
+    private static void runServer() {
+        byte[] defaultKey = null;
+        if (keyFile != null || keyVariable != null) {
+            if (!readKey())
+                System.exit(1);
+            defaultKey = key;
+        }
+        if (engine == CipherEngine.VECTOR && !VectorEngineLoader.isAvailable())
+            console.println("Vector engine is not available (run with --add-modules jdk.incubator.vector), "
+                    + "table engine is used.");
+        try {
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), serverPort);
+            CipherServer server = new CipherServer(address, engine, defaultKey, new KeyScheduleCache());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(1);
+                if (metrics)
+                    CipherMetrics.report(console);
+            }));
+            CipherMetrics.register(); // metrics can be enabled over JMX before the first request
+            server.start();
+            InetSocketAddress bound = server.getAddress();
+            console.println("Listening on http://" + bound.getHostString() + ":" + bound.getPort()
+                    + (defaultKey == null ? ", key is required in the header " + CipherServer.KEY_HEADER : "") + ".");
+        }
+        catch (IOException e) {
+            console.println("Server cannot be started: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Encrypt a plaintext (input file) into the binary
+     * ciphertext file, i.e. the header followed by the
+     * encrypted blocks. The file is read and written in large
+     * chunks or mapped into memory, see {@link FileProcessor}.
+     *
+     * @throws IOException exception during reading/writing file
+     */
+    public static void encryptPlaintext() throws IOException {
+        createProcessor(cipherMode).encrypt(inputFile.toPath(), outputFile.toPath());
+    }
+
+    /** Decrypt a binary ciphertext file (input file)
+     * into output file, see {@link FileProcessor}.
+     * Mode of operation is taken from the header of the file.
+     * The output file is deleted if the decryption fails.
+     *
+     * @throws IOException exception during reading/writing file, truncated file or invalid padding
+     */
+    public static void decryptCiphertext() throws IOException {
+        CipherFileHeader header;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(inputFile))) {
+            header = CipherFileHeader.read(in);
+        }
+        try {
+            createProcessor(header.getMode()).decrypt(inputFile.toPath(), outputFile.toPath());
+        }
+        catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(outputFile.toPath()); // never leave a part of the plaintext
+            throw e;
+        }
+    }
+
+    /** Verify all segments of a binary ciphertext file (input file)
+     * in GCM without decryption into the output file.
+     *
+     * @throws IntegrityException if the ciphertext file was modified
+     * @throws IOException exception during reading file
+     */
+    public static void verifyCiphertext() throws IOException {
+        new GcmFileProcessor(() -> engine.create(expandedKey), pool).verify(inputFile.toPath());
+        console.println("Ciphertext file is authentic.");
+    }
+
+    /** Encrypt a plaintext from the input file or the standard input
+     * into the output file or the standard output, the length of the plaintext
+     * is not needed, see {@link EncryptingOutputStream}. Memory does not
+     * depend on the length, so it can be used in pipelines.
+     *
+     * @throws IOException exception during reading/writing
+     */
+    public static void encryptStream() throws IOException {
+        bis = new BufferedInputStream(inputFile == null ? System.in : new FileInputStream(inputFile));
+        OutputStream out = outputFile == null ? System.out : new FileOutputStream(outputFile);
+        try (EncryptingOutputStream cipherStream = new EncryptingOutputStream(out, aes)) {
+            bis.transferTo(cipherStream);
+        }
+    }
+
+    /** Decrypt a binary ciphertext in ECB from the input file or the standard input
+     * into the output file or the standard output, see {@link DecryptingInputStream}.
+     *
+     * @throws IOException if the ciphertext is not valid or exception during reading/writing
+     */
+    public static void decryptStream() throws IOException {
+        InputStream in = inputFile == null ? System.in : new FileInputStream(inputFile);
+        bos = new BufferedOutputStream(outputFile == null ? System.out : new FileOutputStream(outputFile));
+        try (DecryptingInputStream cipherStream = new DecryptingInputStream(in, aes)) {
+            cipherStream.transferTo(bos);
+        }
+    }
+
+    /** Decrypt only the range of the plaintext from a binary ciphertext
+     * file (input file) into output file or the standard output.
+     * Only the blocks/segments covering the range are read, see {@link RangeDecryptor}.
+     *
+     * @throws IOException if the ciphertext file is not valid or exception during reading/writing
+     */
+    public static void decryptRange() throws IOException {
+        bos = new BufferedOutputStream(outputFile == null ? System.out : new FileOutputStream(outputFile));
+        new RangeDecryptor(aes).decrypt(inputFile.toPath(), range[0], range[1], Channels.newChannel(bos));
+    }
+
+    /**
+     * Create a processor of the binary files according to the options.
+     * Every processor has its own instance of the cipher, so the processors
+     * can be used by several threads of the batch. The pipelined processor
+     * is created once per thread, so its chunks are not allocated for every file.
+     *
+     * @param mode mode of operation
+     * @return processor of the files
+     */
+    private static FileProcessor createProcessor(CipherMode mode) {
+        if (mode == CipherMode.CTR)
+            return new ParallelCounterFileProcessor(() -> engine.create(expandedKey), pool);
+        if (mode == CipherMode.GCM)
+            return new GcmFileProcessor(() -> engine.create(expandedKey), pool);
+        if (mapped)
+            return new MappedFileProcessor(engine.create(expandedKey));
+        if (pipelined)
+            return PIPELINES.get();
+        return new ChannelFileProcessor(engine.create(expandedKey));
+    }
+
+    /** Read a plaintext (input file) block by block
+     * and calls method encryptBlock for each 16 bytes.
+     * Encryption data block writes into output file
+     * as a line of hexadecimal numbers (legacy format).
+     * The last block is padded according to the option.
+     *
+     * @throws IOException exception during reading/writing file
+     */
+    public static void encryptPlaintextHex() throws IOException {
+        bis = new BufferedInputStream(new FileInputStream(inputFile));
+        pw = new PrintWriter(new BufferedWriter(new FileWriter(outputFile)));
+        byte[] datablock = new byte[BlockCipher.BLOCK_SIZE];
+        char[] line = new char[3 * BlockCipher.BLOCK_SIZE]; // datablock in hexadecimal form
+        int index;
+
+        // read file by 16 bytes and encrypt each full datablock
+        while ((index = bis.readNBytes(datablock, 0, BlockCipher.BLOCK_SIZE)) == BlockCipher.BLOCK_SIZE) {
+            long time = CipherMetrics.start();
+            aes.encryptBlock(datablock, 0, datablock, 0);
+            CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, BlockCipher.BLOCK_SIZE);
+            time = CipherMetrics.start();
+            Hex.format(datablock, 0, BlockCipher.BLOCK_SIZE, line, 0);
+            CipherMetrics.stop(CipherMetrics.Stage.HEX, time, BlockCipher.BLOCK_SIZE);
+            pw.println(line);
+        }
+        // pad the rest, PKCS#7 adds a full block if the plaintext has whole blocks
+        if (padding.pad(datablock, 0, index) > 0) {
+            long time = CipherMetrics.start();
+            aes.encryptBlock(datablock, 0, datablock, 0);
+            CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, BlockCipher.BLOCK_SIZE);
+            Hex.format(datablock, 0, BlockCipher.BLOCK_SIZE, line, 0);
+            pw.println(line);
+        }
+    }
+
+    /** Read a ciphertext (input file) line by line,
+     * parse it to the array of bytes and calls
+     * method decryptBlock. Decryption data write into output file.
+     * Used for the legacy format. The last block is held back
+     * until the end of the file, so its padding can be removed.
+     * Every line has to be one block, only the last line may be empty.
+     * The output file is deleted if the decryption fails.
+     *
+     * @throws IOException exception during reading/writing file, invalid line or invalid padding
+     */
+    public static void decryptCiphertextHex() throws IOException {
+        br = new BufferedReader(new FileReader(inputFile));
+        bos = new BufferedOutputStream(new FileOutputStream(outputFile));
+        try {
+            decryptLinesHex();
+        }
+        catch (IOException e) {
+            bos.close();
+            bos = null;
+            Files.deleteIfExists(outputFile.toPath()); // never leave a part of the plaintext
+            throw e;
+        }
+    }
+
+    /**
+     * Decrypt all lines of the legacy format from the reader into the output stream.
+     *
+     * @throws IOException exception during reading/writing file, invalid line or invalid padding
+     */
+    private static void decryptLinesHex() throws IOException {
+        byte[] datablock = new byte[BlockCipher.BLOCK_SIZE];
+        boolean pending = false; // true = datablock holds a decrypted block
+        boolean empty = false; // true = previous line was empty, allowed only at the end
+        int number = 0; // number of the line
+        String line;
+
+        while ((line = br.readLine()) != null) {
+            number++;
+            if (empty)
+                throw new IOException("Line " + (number - 1) + " is empty, every line has to be one block.");
+            if (line.isBlank()) {
+                empty = true;
+                continue;
+            }
+            if (pending)
+                bos.write(datablock); // it is not the last block
+            long time = CipherMetrics.start();
+            int count;
+            try {
+                count = Hex.parse(line, datablock, 0); // convert HEX -> bytes
+            }
+            catch (NumberFormatException e) {
+                count = -1;
+            }
+            if (count != BlockCipher.BLOCK_SIZE)
+                throw new IOException("Line " + number + " is not a block of " + BlockCipher.BLOCK_SIZE
+                        + " hexadecimal numbers.");
+            CipherMetrics.stop(CipherMetrics.Stage.HEX, time, BlockCipher.BLOCK_SIZE);
+            time = CipherMetrics.start();
+            aes.decryptBlock(datablock, 0, datablock, 0);
+            CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, BlockCipher.BLOCK_SIZE);
+            pending = true;
+        }
+        // write the last block without the padding
+        int length;
+        try {
+            length = padding.unpad(datablock, 0, pending ? BlockCipher.BLOCK_SIZE : 0);
+        }
+        catch (IOException e) {
+            throw new IOException(e.getMessage() + " Files from the older versions need --padding=zero.", e);
+        }
+        bos.write(datablock, 0, length);
+    }
+}
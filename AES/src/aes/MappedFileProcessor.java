@@ -0,0 +1,143 @@
+package aes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code MappedFileProcessor} class encrypts/decrypts whole files
+ * in the binary format (see {@link CipherFileHeader}) through memory-mapped
+ * files. Input and output files are mapped by windows and the block cipher
+ * transforms the mapped regions directly, so there is no copying through
+ * the buffers and the paging is left to the operating system. Files can be
+ * bigger than 2 GB, every window is mapped separately.
+ */
+public class MappedFileProcessor implements FileProcessor {
+    /** Default size of the window, 64 MiB. */
+    public static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+    private final BlockCipher cipher;
+    private final long windowSize; // size of the mapped region
+    private final byte[] datablock = new byte[BlockCipher.BLOCK_SIZE]; // trailing partial block
+
+    /**
+     * Create a processor with the default size of the window.
+     *
+     * @param cipher used block cipher
+     */
+    public MappedFileProcessor(BlockCipher cipher) {
+        this(cipher, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Create a processor.
+     *
+     * @param cipher used block cipher
+     * @param windowSize size of the mapped region, rounded down to a multiple of 16 bytes
+     */
+    public MappedFileProcessor(BlockCipher cipher, int windowSize) {
+        this.windowSize = windowSize - windowSize % BlockCipher.BLOCK_SIZE;
+        if (this.windowSize <= 0)
+            throw new IllegalArgumentException("Window has to have at least " + BlockCipher.BLOCK_SIZE + " bytes.");
+        this.cipher = cipher;
+    }
+
+    /**
+     * Encrypt a plaintext file into the binary ciphertext file.
+     * The last block is filled by zeros, the header keeps the original length.
+     *
+     * @param source plaintext file
+     * @param target ciphertext file
+     * @throws IOException exception during reading/writing file
+     */
+    @Override
+    public void encrypt(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = openOutput(target)) {
+            long length = in.size();
+            ByteBuffer header = ByteBuffer.allocate(CipherFileHeader.SIZE);
+            new CipherFileHeader(CipherMode.ECB, length, new byte[CipherFileHeader.IV_SIZE]).write(header);
+            header.flip();
+            ChannelFileProcessor.writeFully(out, header);
+
+            long cipherLength = ChannelFileProcessor.paddedLength(length);
+            for (long position = 0; position < cipherLength; position += windowSize) {
+                long size = Math.min(windowSize, cipherLength - position);
+                long available = Math.min(size, length - position); // bytes of the plaintext in this window
+                MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, position, available);
+                MappedByteBuffer dst = out.map(FileChannel.MapMode.READ_WRITE, CipherFileHeader.SIZE + position, size);
+
+                long time = CipherMetrics.start();
+                cipher.encryptBlocks(src, dst, (int)(available / BlockCipher.BLOCK_SIZE));
+                if (src.hasRemaining()) { // trailing partial block is filled by zeros
+                    int count = src.remaining();
+                    src.get(datablock, 0, count);
+                    for (int i = count; i < BlockCipher.BLOCK_SIZE; i++) {
+                        datablock[i] = 0;
+                    }
+                    cipher.encryptBlock(datablock, 0, datablock, 0);
+                    dst.put(datablock);
+                }
+                CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, size); // includes paging of the window
+            }
+        }
+    }
+
+    /**
+     * Decrypt a binary ciphertext file. The last block
+     * is cut to the original length from the header.
+     *
+     * @param source ciphertext file
+     * @param target plaintext file
+     * @throws IOException if the ciphertext file is not valid or exception during reading/writing file
+     */
+    @Override
+    public void decrypt(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = openOutput(target)) {
+            CipherFileHeader header = ChannelFileProcessor.readHeader(in);
+            if (header.getMode() != CipherMode.ECB)
+                throw new IOException("Unsupported mode: " + header.getMode());
+            if (header.getLength() == CipherFileHeader.UNKNOWN_LENGTH) { // nothing to map, size is not known
+                ChannelFileProcessor.decryptStream(cipher, in, out);
+                return;
+            }
+
+            long length = header.getLength();
+            if (in.size() < CipherFileHeader.SIZE + ChannelFileProcessor.paddedLength(length))
+                throw new EOFException("Ciphertext file is truncated.");
+
+            for (long position = 0; position < length; position += windowSize) {
+                long size = Math.min(windowSize, length - position); // bytes of the plaintext in this window
+                MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, CipherFileHeader.SIZE + position,
+                        ChannelFileProcessor.paddedLength(size));
+                MappedByteBuffer dst = out.map(FileChannel.MapMode.READ_WRITE, position, size);
+
+                long time = CipherMetrics.start();
+                cipher.decryptBlocks(src, dst, (int)(size / BlockCipher.BLOCK_SIZE));
+                if (dst.hasRemaining()) { // trailing partial block is cut to the original length
+                    src.get(datablock);
+                    cipher.decryptBlock(datablock, 0, datablock, 0);
+                    dst.put(datablock, 0, dst.remaining());
+                }
+                CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, size); // includes paging of the window
+            }
+        }
+    }
+
+    /**
+     * Open an output file for mapping, existing file is truncated.
+     *
+     * @param target output file
+     * @return channel for reading and writing
+     * @throws IOException exception during opening file
+     */
+    private static FileChannel openOutput(Path target) throws IOException {
+        return FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+}
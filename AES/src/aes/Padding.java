@@ -0,0 +1,99 @@
+package aes;
+
+import java.io.IOException;
+
+/**
+ * The {@code Padding} enumerates ways of filling the incomplete last block
+ * of the plaintext. Only PKCS#7 can be removed exactly, zeros are kept
+ * for the files encrypted by the older versions.
+ */
+public enum Padding {
+    /** 1 to 16 bytes, each of them holds the count of the added bytes, a full block is added to complete data. */
+    PKCS7("pkcs7") {
+        @Override
+        public int pad(byte[] data, int off, int count) {
+            int padding = BlockCipher.BLOCK_SIZE - count % BlockCipher.BLOCK_SIZE;
+            for (int i = 0; i < padding; i++) {
+                data[off + count + i] = (byte)padding;
+            }
+            return count + padding;
+        }
+
+        @Override
+        public int unpad(byte[] data, int off, int len) throws IOException {
+            if (len < BlockCipher.BLOCK_SIZE || len % BlockCipher.BLOCK_SIZE != 0)
+                throw new IOException("Invalid length of the padded plaintext: " + len);
+            int padding = data[off + len - 1] & 0xff;
+            if (padding < 1 || padding > BlockCipher.BLOCK_SIZE)
+                throw new IOException("Invalid padding of the plaintext.");
+            for (int i = off + len - padding; i < off + len; i++) {
+                if (data[i] != padding)
+                    throw new IOException("Invalid padding of the plaintext.");
+            }
+            return len - padding;
+        }
+    },
+    /** Zeros up to the end of the block, nothing is added to complete data (legacy). */
+    ZERO("zero") {
+        @Override
+        public int pad(byte[] data, int off, int count) {
+            int padded = (count + BlockCipher.BLOCK_SIZE - 1) / BlockCipher.BLOCK_SIZE * BlockCipher.BLOCK_SIZE;
+            for (int i = count; i < padded; i++) {
+                data[off + i] = 0;
+            }
+            return padded;
+        }
+
+        @Override
+        public int unpad(byte[] data, int off, int len) {
+            return len; // zeros cannot be told apart from the plaintext
+        }
+    };
+
+    private final String name; // name used on the command line
+
+    Padding(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Pad the end of the plaintext to whole blocks.
+     *
+     * @param data array with the end of the plaintext and space for one more block
+     * @param off index of the first byte of the end of the plaintext
+     * @param count count of bytes of the end of the plaintext
+     * @return length of the padded data, a multiple of 16 bytes
+     */
+    public abstract int pad(byte[] data, int off, int count);
+
+    /**
+     * Find length of the plaintext in the decrypted padded last blocks.
+     *
+     * @param data array with the decrypted blocks
+     * @param off index of the first byte
+     * @param len count of bytes, the last block has to be included
+     * @return count of bytes of the plaintext
+     * @throws IOException if the padding is not valid
+     */
+    public abstract int unpad(byte[] data, int off, int len) throws IOException;
+
+    /**
+     * Find a padding by its name.
+     *
+     * @param name name of the padding
+     * @return padding with the given name
+     * @throws IllegalArgumentException if there is no such padding
+     */
+    public static Padding fromName(String name) {
+        for (Padding padding : values()) {
+            if (padding.name.equalsIgnoreCase(name))
+                return padding;
+        }
+        throw new IllegalArgumentException("Unknown padding: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,189 @@
+package aes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * The {@code ParallelCounterFileProcessor} class encrypts/decrypts whole files
+ * in the binary format (see {@link CipherFileHeader}) in CTR mode. The file is
+ * split into large ranges which are processed by the tasks of the
+ * {@link ForkJoinPool}, every task has its own block cipher and buffer and uses
+ * positional reads/writes of the shared channels. CTR needs no padding, so the
+ * ciphertext has the same length as the plaintext.
+ */
+public class ParallelCounterFileProcessor implements FileProcessor {
+    /** Size of the buffer of a single task, 1 MiB. */
+    public static final int BUFFER_SIZE = 1 << 20;
+    private static final int TASKS_PER_THREAD = 4; // more tasks than threads for balancing of the work
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Supplier<BlockCipher> ciphers; // creates a block cipher for every task
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a processor using the common pool.
+     *
+     * @param ciphers creates a new instance of the block cipher with the key
+     */
+    public ParallelCounterFileProcessor(Supplier<BlockCipher> ciphers) {
+        this(ciphers, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a processor.
+     *
+     * @param ciphers creates a new instance of the block cipher with the key
+     * @param pool pool running the tasks
+     */
+    public ParallelCounterFileProcessor(Supplier<BlockCipher> ciphers, ForkJoinPool pool) {
+        this.ciphers = ciphers;
+        this.pool = pool;
+    }
+
+    /**
+     * Encrypt a plaintext file into the binary ciphertext file
+     * with a random initial counter block.
+     *
+     * @param source plaintext file
+     * @param target ciphertext file
+     * @throws IOException exception during reading/writing file
+     */
+    @Override
+    public void encrypt(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = ChannelFileProcessor.openOutput(target)) {
+            byte[] iv = new byte[CipherFileHeader.IV_SIZE];
+            RANDOM.nextBytes(iv);
+            CipherFileHeader header = new CipherFileHeader(CipherMode.CTR, in.size(), iv);
+            ByteBuffer buffer = ByteBuffer.allocate(CipherFileHeader.SIZE);
+            header.write(buffer);
+            buffer.flip();
+            ChannelFileProcessor.writeFully(out, buffer);
+
+            transform(header, in, 0, out, CipherFileHeader.SIZE);
+        }
+    }
+
+    /**
+     * Decrypt a binary ciphertext file in CTR mode.
+     *
+     * @param source ciphertext file
+     * @param target plaintext file
+     * @throws IOException if the ciphertext file is not valid or exception during reading/writing file
+     */
+    @Override
+    public void decrypt(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = ChannelFileProcessor.openOutput(target)) {
+            CipherFileHeader header = ChannelFileProcessor.readHeader(in);
+            if (header.getMode() != CipherMode.CTR)
+                throw new IOException("Unsupported mode: " + header.getMode());
+            if (in.size() < CipherFileHeader.SIZE + header.getLength())
+                throw new EOFException("Ciphertext file is truncated.");
+
+            transform(header, in, CipherFileHeader.SIZE, out, 0);
+        }
+    }
+
+    /**
+     * Encrypt/decrypt all data in parallel.
+     *
+     * @param header header with the initial counter block and the length of the data
+     * @param in input channel
+     * @param inOffset position of the data in the input channel
+     * @param out output channel
+     * @param outOffset position of the data in the output channel
+     * @throws IOException exception during reading/writing file
+     */
+    private void transform(CipherFileHeader header, FileChannel in, long inOffset,
+                           FileChannel out, long outOffset) throws IOException {
+        long length = header.getLength();
+        long threshold = length / ((long)pool.getParallelism() * TASKS_PER_THREAD);
+        threshold = Math.max(BUFFER_SIZE, threshold - threshold % BlockCipher.BLOCK_SIZE);
+        try {
+            pool.invoke(new RangeTask(header.getIv(), in, inOffset, out, outOffset, 0, length, threshold));
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The {@code RangeTask} encrypts/decrypts a range of the data,
+     * large range is split into two halves.
+     */
+    private class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] iv;
+        private final FileChannel in;
+        private final long inOffset;
+        private final FileChannel out;
+        private final long outOffset;
+        private final long start;     // first byte of the range, multiple of 16
+        private final long end;       // end of the range (exclusive)
+        private final long threshold; // maximal size of the range processed without splitting
+
+        RangeTask(byte[] iv, FileChannel in, long inOffset, FileChannel out, long outOffset,
+                  long start, long end, long threshold) {
+            this.iv = iv;
+            this.in = in;
+            this.inOffset = inOffset;
+            this.out = out;
+            this.outOffset = outOffset;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > threshold) {
+                long middle = start + (end - start) / 2;
+                middle -= middle % BlockCipher.BLOCK_SIZE; // ranges have to start at the block boundary
+                invokeAll(new RangeTask(iv, in, inOffset, out, outOffset, start, middle, threshold),
+                        new RangeTask(iv, in, inOffset, out, outOffset, middle, end, threshold));
+                return;
+            }
+
+            CipherMetrics.queued(pool.getQueuedTaskCount());
+            CounterMode ctr = new CounterMode(ciphers.get(), iv);
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int)Math.min(BUFFER_SIZE, end - start));
+            try {
+                for (long position = start; position < end; position += buffer.capacity()) {
+                    buffer.clear();
+                    buffer.limit((int)Math.min(buffer.capacity(), end - position));
+                    long time = CipherMetrics.start();
+                    while (buffer.hasRemaining()) {
+                        if (in.read(buffer, inOffset + position + buffer.position()) < 0)
+                            throw new EOFException("Input file is truncated.");
+                    }
+                    CipherMetrics.stop(CipherMetrics.Stage.READ, time, buffer.limit());
+                    buffer.flip();
+                    time = CipherMetrics.start();
+                    ctr.apply(position / BlockCipher.BLOCK_SIZE, buffer);
+                    CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, buffer.limit());
+                    buffer.flip();
+                    time = CipherMetrics.start();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer, outOffset + position + buffer.position());
+                    }
+                    CipherMetrics.stop(CipherMetrics.Stage.WRITE, time, buffer.limit());
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package aes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The {@code PipelinedFileProcessor} class encrypts/decrypts whole files in the binary
+ * format (see {@link CipherFileHeader}) in ECB like {@link ChannelFileProcessor}, but
+ * reading, the cipher and writing run at the same time in separate threads: a reader
+ * stage, one or more cipher stages and a writer stage. The stages pass chunks through
+ * bounded queues, the chunks come from a fixed pool of buffers, so the reader waits when
+ * all buffers are in use and memory stays bounded. The writer puts the chunks back into
+ * the original order, so a sequential mode can use a single cipher stage. Throughput
+ * approaches the slower of the disk and the cipher instead of their sum of times.
+ * <p>
+ * Buffers are allocated once and reused for all files, so the instance must not
+ * be shared by several threads.
+ */
+public class PipelinedFileProcessor implements FileProcessor {
+    /** Default size of the chunk, 1 MiB. */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_STAGE = 2; // buffers per stage, one is processed, one waits
+
+    private final Supplier<BlockCipher> ciphers; // creates a block cipher for every cipher stage
+    private final int stages; // count of the cipher stages
+    private final List<Chunk> chunks = new ArrayList<>(); // all chunks of the pool
+    private final BlockingQueue<Chunk> free; // pool of the unused chunks
+
+    /**
+     * Create a processor with the default size of the chunk.
+     *
+     * @param ciphers creates a new instance of the block cipher with the key
+     * @param stages count of the cipher stages (threads)
+     */
+    public PipelinedFileProcessor(Supplier<BlockCipher> ciphers, int stages) {
+        this(ciphers, stages, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a processor.
+     *
+     * @param ciphers creates a new instance of the block cipher with the key
+     * @param stages count of the cipher stages (threads)
+     * @param bufferSize size of the chunk, rounded down to a multiple of 16 bytes
+     */
+    public PipelinedFileProcessor(Supplier<BlockCipher> ciphers, int stages, int bufferSize) {
+        int size = bufferSize - bufferSize % BlockCipher.BLOCK_SIZE;
+        if (size <= 0)
+            throw new IllegalArgumentException("Buffer has to have at least " + BlockCipher.BLOCK_SIZE + " bytes.");
+        if (stages <= 0)
+            throw new IllegalArgumentException("Count of the cipher stages has to be positive.");
+        this.ciphers = ciphers;
+        this.stages = stages;
+        int count = CHUNKS_PER_STAGE * (stages + 2); // the reader and the writer are stages too
+        for (int i = 0; i < count; i++) {
+            chunks.add(new Chunk(ByteBuffer.allocateDirect(size)));
+        }
+        this.free = new ArrayBlockingQueue<>(count, false, chunks);
+    }
+
+    /**
+     * Encrypt a plaintext file into the binary ciphertext file.
+     * The last block is filled by zeros, the header keeps the original length.
+     *
+     * @param source plaintext file
+     * @param target ciphertext file
+     * @throws IOException exception during reading/writing file
+     */
+    @Override
+    public void encrypt(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = ChannelFileProcessor.openOutput(target)) {
+            long length = in.size();
+            ByteBuffer header = ByteBuffer.allocate(CipherFileHeader.SIZE);
+            new CipherFileHeader(CipherMode.ECB, length, new byte[CipherFileHeader.IV_SIZE]).write(header);
+            header.flip();
+            ChannelFileProcessor.writeFully(out, header);
+
+            run(in, out, length, ChannelFileProcessor.paddedLength(length), true);
+        }
+    }
+
+    /**
+     * Decrypt a binary ciphertext file. The last block
+     * is cut to the original length from the header.
+     *
+     * @param source ciphertext file
+     * @param target plaintext file
+     * @throws IOException if the ciphertext file is not valid or exception during reading/writing file
+     */
+    @Override
+    public void decrypt(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = ChannelFileProcessor.openOutput(target)) {
+            CipherFileHeader header = ChannelFileProcessor.readHeader(in);
+            if (header.getMode() != CipherMode.ECB)
+                throw new IOException("Unsupported mode: " + header.getMode());
+            if (header.getLength() == CipherFileHeader.UNKNOWN_LENGTH) {
+                ChannelFileProcessor.decryptStream(ciphers.get(), in, out);
+                return;
+            }
+
+            long length = header.getLength();
+            run(in, out, length, ChannelFileProcessor.paddedLength(length), false);
+        }
+    }
+
+    /**
+     * Run all stages and wait until the writer finishes or some stage fails.
+     *
+     * @param in input channel at the first chunk
+     * @param out output channel at the first chunk
+     * @param length length of the plaintext
+     * @param blocksLength length of the plaintext rounded up to whole blocks
+     * @param encryption true = encryption, false = decryption
+     * @throws IOException exception of some stage
+     */
+    private void run(FileChannel in, FileChannel out, long length, long blocksLength, boolean encryption)
+            throws IOException {
+        // queues have place also for the end marks, so only the pool blocks
+        BlockingQueue<Chunk> read = new ArrayBlockingQueue<>(chunks.size() + stages);
+        BlockingQueue<Chunk> transformed = new ArrayBlockingQueue<>(chunks.size() + stages);
+        ExecutorService executor = Executors.newFixedThreadPool(stages + 2);
+        try {
+            CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+            completion.submit(() -> read(in, length, blocksLength, encryption, read));
+            for (int i = 0; i < stages; i++) {
+                BlockCipher cipher = ciphers.get();
+                completion.submit(() -> transform(cipher, encryption, read, transformed));
+            }
+            completion.submit(() -> write(out, transformed));
+            for (int i = 0; i < stages + 2; i++) {
+                completion.take().get(); // the first failure stops all stages
+            }
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException)e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Processing of the file was interrupted.");
+        }
+        finally {
+            executor.shutdownNow();
+            awaitTermination(executor);
+            // chunks of a failed run may be anywhere, no stage uses them now
+            free.clear();
+            free.addAll(chunks);
+        }
+    }
+
+    /**
+     * Reader stage, read the chunks in the order of the file. Last chunk of the plaintext
+     * is filled by zeros to whole blocks, the end is marked by a poison chunk for every
+     * cipher stage.
+     *
+     * @param in input channel at the first chunk
+     * @param length length of the plaintext
+     * @param blocksLength length of the plaintext rounded up to whole blocks
+     * @param encryption true = the input is the plaintext, false = the ciphertext
+     * @param read queue of the read chunks
+     * @return nothing
+     * @throws IOException exception during reading or truncated ciphertext
+     * @throws InterruptedException if other stage failed
+     */
+    private Void read(FileChannel in, long length, long blocksLength, boolean encryption,
+                      BlockingQueue<Chunk> read) throws IOException, InterruptedException {
+        long index = 0;
+        long position = 0;
+        while (position < blocksLength) {
+            Chunk chunk = free.take();
+            ByteBuffer buffer = chunk.buffer;
+            buffer.clear();
+            if (blocksLength - position < buffer.capacity())
+                buffer.limit((int)(blocksLength - position));
+            long time = CipherMetrics.start();
+            int count = ChannelFileProcessor.readFully(in, buffer);
+            CipherMetrics.stop(CipherMetrics.Stage.READ, time, count);
+            if (encryption) {
+                while (buffer.hasRemaining()) { // missing bytes of the last block are zeros
+                    buffer.put((byte)0);
+                }
+            }
+            else if (buffer.hasRemaining())
+                throw new EOFException("Ciphertext file is truncated.");
+            buffer.flip();
+            chunk.index = index++;
+            chunk.length = encryption ? buffer.limit() : (int)Math.min(buffer.limit(), length - position);
+            position += buffer.limit();
+            read.put(chunk);
+        }
+        for (int i = 0; i < stages; i++) {
+            read.put(Chunk.END);
+        }
+        return null;
+    }
+
+    /**
+     * Cipher stage, encrypt/decrypt the chunks in place in any order.
+     *
+     * @param cipher block cipher of this stage
+     * @param encryption true = encryption, false = decryption
+     * @param read queue of the read chunks
+     * @param transformed queue of the transformed chunks
+     * @return nothing
+     * @throws InterruptedException if other stage failed
+     */
+    private Void transform(BlockCipher cipher, boolean encryption, BlockingQueue<Chunk> read,
+                           BlockingQueue<Chunk> transformed) throws InterruptedException {
+        Chunk chunk;
+        while ((chunk = read.take()) != Chunk.END) {
+            CipherMetrics.queued(read.size());
+            ByteBuffer buffer = chunk.buffer;
+            int blocks = buffer.limit() / BlockCipher.BLOCK_SIZE;
+            long time = CipherMetrics.start();
+            if (encryption)
+                cipher.encryptBlocks(buffer, buffer.duplicate(), blocks);
+            else
+                cipher.decryptBlocks(buffer, buffer.duplicate(), blocks);
+            CipherMetrics.stop(CipherMetrics.Stage.CIPHER, time, buffer.limit());
+            buffer.flip();
+            transformed.put(chunk);
+        }
+        transformed.put(Chunk.END);
+        return null;
+    }
+
+    /**
+     * Writer stage, write the chunks in the order of their indexes and return them to the pool.
+     *
+     * @param out output channel at the first chunk
+     * @param transformed queue of the transformed chunks
+     * @return nothing
+     * @throws IOException exception during writing
+     * @throws InterruptedException if other stage failed
+     */
+    private Void write(FileChannel out, BlockingQueue<Chunk> transformed) throws IOException, InterruptedException {
+        Map<Long, Chunk> pending = new HashMap<>(); // chunks which came before the previous ones
+        long next = 0; // index of the next written chunk
+        for (int finished = 0; finished < stages; ) {
+            Chunk chunk = transformed.take();
+            if (chunk == Chunk.END) {
+                finished++;
+                continue;
+            }
+            pending.put(chunk.index, chunk);
+            while ((chunk = pending.remove(next)) != null) {
+                ByteBuffer buffer = chunk.buffer;
+                buffer.limit(chunk.length);
+                long time = CipherMetrics.start();
+                ChannelFileProcessor.writeFully(out, buffer);
+                CipherMetrics.stop(CipherMetrics.Stage.WRITE, time, chunk.length);
+                free.put(chunk);
+                next++;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Wait until all stages stop after they were interrupted. Stages wait only for the queues
+     * and the channels, so they stop soon; the chunks can be reused after that.
+     *
+     * @param executor threads of the stages
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS))
+                    break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * The {@code Chunk} class is a pooled buffer with its position in the file.
+     */
+    private static final class Chunk {
+        /** Marks the end of the chunks in a queue. */
+        static final Chunk END = new Chunk(null);
+
+        final ByteBuffer buffer; // data of the chunk, whole blocks
+        long index;              // index of the chunk in the file
+        int length;              // count of written bytes, less than the limit for the last chunk of decryption
+
+        Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
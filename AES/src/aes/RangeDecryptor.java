@@ -0,0 +1,212 @@
+package aes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code RangeDecryptor} class decrypts only a range of bytes of the plaintext
+ * from a binary ciphertext file (see {@link CipherFileHeader}). Blocks of ECB and
+ * CTR are independent, so only the blocks covering the range are read; the counter
+ * of the first block is computed from its index. GCM segments are authenticated
+ * as a whole, so the segments covering the range are read and verified.
+ * The rest of the file is never read.
+ * <p>
+ * Instance holds the block cipher and a buffer, so it must not be shared by several threads.
+ */
+public class RangeDecryptor {
+    private static final int BUFFER_SIZE = 1 << 20; // size of the chunk of the ciphertext, multiple of 16
+
+    private final BlockCipher cipher;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE + GaloisCounterMode.TAG_SIZE);
+
+    /**
+     * Create a decryptor.
+     *
+     * @param cipher used block cipher, not shared with other threads
+     */
+    public RangeDecryptor(BlockCipher cipher) {
+        this.cipher = cipher;
+    }
+
+    /**
+     * Decrypt a range of the plaintext into an array. The range is cut at the end of the plaintext.
+     *
+     * @param source ciphertext file
+     * @param offset index of the first byte of the plaintext
+     * @param length count of bytes
+     * @return decrypted bytes
+     * @throws IOException if the ciphertext file is not valid or exception during reading file
+     */
+    public byte[] decrypt(Path source, long offset, int length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        decrypt(source, offset, length, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    /**
+     * Decrypt a range of the plaintext. The range is cut at the end of the plaintext.
+     *
+     * @param source ciphertext file
+     * @param offset index of the first byte of the plaintext
+     * @param length count of bytes
+     * @param target destination of the decrypted bytes
+     * @return count of the written bytes
+     * @throws IntegrityException if a GCM segment in the range was modified
+     * @throws IOException if the ciphertext file is not valid or exception during reading/writing
+     */
+    public long decrypt(Path source, long offset, long length, WritableByteChannel target) throws IOException {
+        if (offset < 0 || length < 0)
+            throw new IllegalArgumentException("Invalid range: " + offset + ":" + length);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            CipherFileHeader header = ChannelFileProcessor.readHeader(in);
+            long size = plaintextLength(header, in);
+            if (offset >= size)
+                return 0;
+            long end = length > size - offset ? size : offset + length;
+            if (header.getMode() == CipherMode.GCM)
+                return decryptSegments(header, in, offset, end, target);
+            return decryptBlocks(header, in, offset, end, target);
+        }
+    }
+
+    /**
+     * Get length of the plaintext. Length of a padded stream is found from the padding of the last block.
+     *
+     * @param header header of the file
+     * @param in channel of the file
+     * @return length of the plaintext
+     * @throws IOException if the ciphertext file is not valid or exception during reading file
+     */
+    private long plaintextLength(CipherFileHeader header, FileChannel in) throws IOException {
+        if (header.getLength() != CipherFileHeader.UNKNOWN_LENGTH)
+            return header.getLength();
+        long blocks = in.size() - CipherFileHeader.SIZE;
+        if (blocks < BlockCipher.BLOCK_SIZE || blocks % BlockCipher.BLOCK_SIZE != 0)
+            throw new EOFException("Ciphertext is truncated.");
+        byte[] last = new byte[BlockCipher.BLOCK_SIZE];
+        buffer.clear().limit(BlockCipher.BLOCK_SIZE);
+        readFully(in, buffer, in.size() - BlockCipher.BLOCK_SIZE);
+        buffer.flip();
+        buffer.get(last);
+        cipher.decryptBlock(last, 0, last, 0);
+        return blocks - BlockCipher.BLOCK_SIZE + Padding.PKCS7.unpad(last, 0, BlockCipher.BLOCK_SIZE);
+    }
+
+    /**
+     * Decrypt the blocks of ECB or CTR covering the range.
+     *
+     * @param header header of the file
+     * @param in channel of the file
+     * @param offset index of the first byte of the plaintext
+     * @param end index after the last byte of the plaintext
+     * @param target destination of the decrypted bytes
+     * @return count of the written bytes
+     * @throws IOException exception during reading/writing
+     */
+    private long decryptBlocks(CipherFileHeader header, FileChannel in, long offset, long end,
+                               WritableByteChannel target) throws IOException {
+        CounterMode ctr = header.getMode() == CipherMode.CTR ? new CounterMode(cipher, header.getIv()) : null;
+        // ECB has whole blocks in the file, CTR has exactly the length of the plaintext
+        long last = ctr != null ? end : ChannelFileProcessor.paddedLength(end);
+        long written = 0;
+        for (long position = offset - offset % BlockCipher.BLOCK_SIZE; position < end; position += BUFFER_SIZE) {
+            int count = (int)Math.min(BUFFER_SIZE, last - position);
+            buffer.clear().limit(count);
+            readFully(in, buffer, CipherFileHeader.SIZE + position);
+            buffer.flip();
+            if (ctr != null)
+                ctr.apply(position / BlockCipher.BLOCK_SIZE, buffer);
+            else
+                cipher.decryptBlocks(buffer, buffer.duplicate(), count / BlockCipher.BLOCK_SIZE);
+            written += writeRange(buffer, position, offset, end, target);
+        }
+        return written;
+    }
+
+    /**
+     * Verify and decrypt the GCM segments covering the range.
+     *
+     * @param header header of the file
+     * @param in channel of the file
+     * @param offset index of the first byte of the plaintext
+     * @param end index after the last byte of the plaintext
+     * @param target destination of the decrypted bytes
+     * @return count of the written bytes
+     * @throws IntegrityException if a segment was modified
+     * @throws IOException exception during reading/writing
+     */
+    private long decryptSegments(CipherFileHeader header, FileChannel in, long offset, long end,
+                                 WritableByteChannel target) throws IOException {
+        int segmentSize = GcmFileProcessor.SEGMENT_SIZE;
+        int tagSize = GaloisCounterMode.TAG_SIZE;
+        long length = header.getLength();
+        long segments = GcmFileProcessor.segmentCount(length);
+        if (in.size() < CipherFileHeader.SIZE + GcmFileProcessor.ciphertextLength(length))
+            throw new EOFException("Ciphertext file is truncated.");
+
+        ByteBuffer aad = ByteBuffer.allocate(CipherFileHeader.SIZE);
+        header.write(aad);
+        GaloisCounterMode gcm = new GaloisCounterMode(cipher, GaloisCounterMode.createHash(cipher));
+        byte[] iv = header.getIv();
+        byte[] nonce = new byte[GaloisCounterMode.NONCE_SIZE];
+        long written = 0;
+        for (long index = offset / segmentSize; index * segmentSize < end; index++) {
+            long position = index * segmentSize;
+            int size = (int)Math.min(segmentSize, length - position);
+            buffer.clear().limit(size + tagSize);
+            readFully(in, buffer, CipherFileHeader.SIZE + index * (segmentSize + tagSize));
+            buffer.flip();
+            buffer.limit(size);
+            GcmFileProcessor.segmentNonce(iv, index, index == segments - 1, nonce);
+            if (!gcm.decrypt(nonce, aad.array(), buffer, buffer.array(), size))
+                throw new IntegrityException("Segment " + index + " failed authentication.");
+            buffer.flip();
+            written += writeRange(buffer, position, offset, end, target);
+        }
+        return written;
+    }
+
+    /**
+     * Write the part of the decrypted chunk which is inside the range.
+     *
+     * @param chunk decrypted chunk, from 0 to the limit
+     * @param position index of the first byte of the chunk in the plaintext
+     * @param offset index of the first byte of the range
+     * @param end index after the last byte of the range
+     * @param target destination of the decrypted bytes
+     * @return count of the written bytes
+     * @throws IOException exception during writing
+     */
+    private static int writeRange(ByteBuffer chunk, long position, long offset, long end,
+                                  WritableByteChannel target) throws IOException {
+        int from = (int)(Math.max(offset, position) - position);
+        int to = (int)(Math.min(end, position + chunk.limit()) - position);
+        chunk.limit(to).position(from);
+        while (chunk.hasRemaining()) {
+            target.write(chunk);
+        }
+        return to - from;
+    }
+
+    /**
+     * Read from the position of the channel until the buffer is full.
+     *
+     * @param channel source channel
+     * @param buffer destination buffer
+     * @param position position in the channel
+     * @throws IOException exception during reading or end of the file
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Ciphertext file is truncated.");
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package aes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The {@code TableAdvancedEncryptionStandard} class is an alternative AES engine.
+ * The data block is kept in four 32-bit words (one word per column) and
+ * SubBytes, ShiftRows and MixColumns of a single round are merged into
+ * lookups to the precomputed T-tables. Decryption uses the equivalent
+ * inverse cipher, therefore the decryption round keys are transformed
+ * by InvMixColumns in advance. Results are byte-identical with
+ * {@link AdvancedEncryptionStandard}.
+ */
+public class TableAdvancedEncryptionStandard implements BlockCipher {
+    private static final int SIZE = 16; // size of the key/datablock
+    private static final int COLUMN_SIZE = 4; // size of the column/row
+    private static final int BIT_MASK = 255; // mask to create 8bit integer
+
+    /** S-Box for encryption indexed directly by the byte */
+    private static final int[] SBOX = new int[256];
+    /** S-Box for decryption indexed directly by the byte */
+    private static final int[] INV_SBOX = new int[256];
+    /** T-tables for encryption, TE1..TE3 are TE0 rotated by 8, 16 and 24 bits */
+    private static final int[] TE0 = new int[256];
+    private static final int[] TE1 = new int[256];
+    private static final int[] TE2 = new int[256];
+    private static final int[] TE3 = new int[256];
+    /** T-tables for decryption, TD1..TD3 are TD0 rotated by 8, 16 and 24 bits */
+    private static final int[] TD0 = new int[256];
+    private static final int[] TD1 = new int[256];
+    private static final int[] TD2 = new int[256];
+    private static final int[] TD3 = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            SBOX[i] = AdvancedEncryptionStandard.SBOX_ENCRYPTION[i >> 4][i & 15];
+            INV_SBOX[i] = AdvancedEncryptionStandard.SBOX_DECRYPTION[i >> 4][i & 15];
+
+            // column [2s, s, s, 3s] of the MixColumns matrix
+            int s = SBOX[i];
+            TE0[i] = (GaloisField.MUL2[s] << 24) | (s << 16) | (s << 8) | GaloisField.MUL3[s];
+            TE1[i] = Integer.rotateRight(TE0[i], 8);
+            TE2[i] = Integer.rotateRight(TE0[i], 16);
+            TE3[i] = Integer.rotateRight(TE0[i], 24);
+
+            // column [14s, 9s, 13s, 11s] of the InvMixColumns matrix
+            s = INV_SBOX[i];
+            TD0[i] = (GaloisField.MUL14[s] << 24) | (GaloisField.MUL9[s] << 16)
+                    | (GaloisField.MUL13[s] << 8) | GaloisField.MUL11[s];
+            TD1[i] = Integer.rotateRight(TD0[i], 8);
+            TD2[i] = Integer.rotateRight(TD0[i], 16);
+            TD3[i] = Integer.rotateRight(TD0[i], 24);
+        }
+    }
+
+    private final int[] encryptionKey; // round keys for encryption, shared with the expanded key
+    private final int[] decryptionKey; // round keys for decryption, shared with the expanded key
+    private final int rounds; // count of rounds, 10, 12 or 14
+    private final int[] state = new int[COLUMN_SIZE]; // columns of the datablock, reused between calls
+
+    /**
+     * Create an instance of AES and generate all expansion keys.
+     *
+     * @param key initial key
+     */
+    public TableAdvancedEncryptionStandard(String key) {
+        this(ExpandedKey.of(key));
+    }
+
+    /**
+     * Create an instance of AES using already expanded key. Creation is cheap,
+     * so every thread can have its own instance sharing the expanded key.
+     *
+     * @param key expanded key
+     */
+    public TableAdvancedEncryptionStandard(ExpandedKey key) {
+        this.encryptionKey = key.encryptionKey();
+        this.decryptionKey = key.decryptionKey();
+        this.rounds = key.getRounds();
+    }
+
+    @Override
+    public void encryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        load(in, inOff);
+        encrypt();
+        store(out, outOff);
+    }
+
+    @Override
+    public void decryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+        load(in, inOff);
+        decrypt();
+        store(out, outOff);
+    }
+
+    @Override
+    public void encryptBlock(ByteBuffer in, ByteBuffer out) {
+        load(in);
+        encrypt();
+        store(out);
+    }
+
+    @Override
+    public void decryptBlock(ByteBuffer in, ByteBuffer out) {
+        load(in);
+        decrypt();
+        store(out);
+    }
+
+    /** Encrypt the words of the state in place. */
+    private void encrypt() {
+        int[] rk = encryptionKey;
+
+        // Initial round
+        int s0 = state[0] ^ rk[0];
+        int s1 = state[1] ^ rk[1];
+        int s2 = state[2] ^ rk[2];
+        int s3 = state[3] ^ rk[3];
+        int t0, t1, t2, t3;
+
+        // Main rounds
+        int k = COLUMN_SIZE;
+        for (int i = 1; i < rounds; i++) {
+            t0 = TE0[s0 >>> 24] ^ TE1[(s1 >>> 16) & BIT_MASK] ^ TE2[(s2 >>> 8) & BIT_MASK] ^ TE3[s3 & BIT_MASK] ^ rk[k];
+            t1 = TE0[s1 >>> 24] ^ TE1[(s2 >>> 16) & BIT_MASK] ^ TE2[(s3 >>> 8) & BIT_MASK] ^ TE3[s0 & BIT_MASK] ^ rk[k + 1];
+            t2 = TE0[s2 >>> 24] ^ TE1[(s3 >>> 16) & BIT_MASK] ^ TE2[(s0 >>> 8) & BIT_MASK] ^ TE3[s1 & BIT_MASK] ^ rk[k + 2];
+            t3 = TE0[s3 >>> 24] ^ TE1[(s0 >>> 16) & BIT_MASK] ^ TE2[(s1 >>> 8) & BIT_MASK] ^ TE3[s2 & BIT_MASK] ^ rk[k + 3];
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+            k += COLUMN_SIZE;
+        }
+
+        // Final round, without MixColumns
+        state[0] = finalColumn(SBOX, s0, s1, s2, s3) ^ rk[k];
+        state[1] = finalColumn(SBOX, s1, s2, s3, s0) ^ rk[k + 1];
+        state[2] = finalColumn(SBOX, s2, s3, s0, s1) ^ rk[k + 2];
+        state[3] = finalColumn(SBOX, s3, s0, s1, s2) ^ rk[k + 3];
+    }
+
+    /** Decrypt the words of the state in place. */
+    private void decrypt() {
+        int[] rk = decryptionKey;
+
+        // Inverse initial round
+        int s0 = state[0] ^ rk[0];
+        int s1 = state[1] ^ rk[1];
+        int s2 = state[2] ^ rk[2];
+        int s3 = state[3] ^ rk[3];
+        int t0, t1, t2, t3;
+
+        // Inverse main rounds, rows are shifted to the right
+        int k = COLUMN_SIZE;
+        for (int i = 1; i < rounds; i++) {
+            t0 = TD0[s0 >>> 24] ^ TD1[(s3 >>> 16) & BIT_MASK] ^ TD2[(s2 >>> 8) & BIT_MASK] ^ TD3[s1 & BIT_MASK] ^ rk[k];
+            t1 = TD0[s1 >>> 24] ^ TD1[(s0 >>> 16) & BIT_MASK] ^ TD2[(s3 >>> 8) & BIT_MASK] ^ TD3[s2 & BIT_MASK] ^ rk[k + 1];
+            t2 = TD0[s2 >>> 24] ^ TD1[(s1 >>> 16) & BIT_MASK] ^ TD2[(s0 >>> 8) & BIT_MASK] ^ TD3[s3 & BIT_MASK] ^ rk[k + 2];
+            t3 = TD0[s3 >>> 24] ^ TD1[(s2 >>> 16) & BIT_MASK] ^ TD2[(s1 >>> 8) & BIT_MASK] ^ TD3[s0 & BIT_MASK] ^ rk[k + 3];
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+            k += COLUMN_SIZE;
+        }
+
+        // Inverse final round, without InvMixColumns
+        state[0] = finalColumn(INV_SBOX, s0, s3, s2, s1) ^ rk[k];
+        state[1] = finalColumn(INV_SBOX, s1, s0, s3, s2) ^ rk[k + 1];
+        state[2] = finalColumn(INV_SBOX, s2, s1, s0, s3) ^ rk[k + 2];
+        state[3] = finalColumn(INV_SBOX, s3, s2, s1, s0) ^ rk[k + 3];
+    }
+
+    /**
+     * Pack the datablock into the words of the state,
+     * the first byte of the column is the most significant one.
+     *
+     * @param in source array
+     * @param off index of the first byte of the datablock
+     */
+    private void load(byte[] in, int off) {
+        for (int i = 0; i < COLUMN_SIZE; i++, off += COLUMN_SIZE) {
+            state[i] = ((in[off] & BIT_MASK) << 24) | ((in[off + 1] & BIT_MASK) << 16)
+                    | ((in[off + 2] & BIT_MASK) << 8) | (in[off + 3] & BIT_MASK);
+        }
+    }
+
+    /**
+     * Unpack the words of the state into the datablock.
+     *
+     * @param out destination array
+     * @param off index of the first byte of the datablock
+     */
+    private void store(byte[] out, int off) {
+        for (int i = 0; i < COLUMN_SIZE; i++, off += COLUMN_SIZE) {
+            out[off] = (byte)(state[i] >>> 24);
+            out[off + 1] = (byte)(state[i] >>> 16);
+            out[off + 2] = (byte)(state[i] >>> 8);
+            out[off + 3] = (byte)state[i];
+        }
+    }
+
+    /**
+     * Pack the datablock at the position of the buffer into the words of the state.
+     *
+     * @param in source buffer
+     */
+    private void load(ByteBuffer in) {
+        int position = in.position();
+        boolean swap = in.order() != ByteOrder.BIG_ENDIAN;
+        for (int i = 0; i < COLUMN_SIZE; i++) {
+            int word = in.getInt(position + COLUMN_SIZE * i);
+            state[i] = swap ? Integer.reverseBytes(word) : word;
+        }
+        in.position(position + SIZE);
+    }
+
+    /**
+     * Unpack the words of the state into the datablock at the position of the buffer.
+     *
+     * @param out destination buffer
+     */
+    private void store(ByteBuffer out) {
+        int position = out.position();
+        boolean swap = out.order() != ByteOrder.BIG_ENDIAN;
+        for (int i = 0; i < COLUMN_SIZE; i++) {
+            out.putInt(position + COLUMN_SIZE * i, swap ? Integer.reverseBytes(state[i]) : state[i]);
+        }
+        out.position(position + SIZE);
+    }
+
+    /**
+     * Make SubBytes and ShiftRows of the final round for one column.
+     * Each row of the new column is taken from a different word.
+     *
+     * @param sbox used S-Box
+     * @param w0 word with the first row
+     * @param w1 word with the second row
+     * @param w2 word with the third row
+     * @param w3 word with the fourth row
+     * @return new column
+     */
+    private static int finalColumn(int[] sbox, int w0, int w1, int w2, int w3) {
+        return (sbox[w0 >>> 24] << 24) | (sbox[(w1 >>> 16) & BIT_MASK] << 16)
+                | (sbox[(w2 >>> 8) & BIT_MASK] << 8) | sbox[w3 & BIT_MASK];
+    }
+}
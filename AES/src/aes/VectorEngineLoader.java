@@ -0,0 +1,63 @@
+package aes;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * The {@code VectorEngineLoader} class loads the engine using the Vector API
+ * reflectively. The engine is compiled only by JDK 17+ and it needs the module
+ * {@code jdk.incubator.vector} (option {@code --add-modules jdk.incubator.vector}),
+ * in other cases the table engine is used instead.
+ */
+final class VectorEngineLoader {
+    private static final String CLASS_NAME = "aes.VectorAdvancedEncryptionStandard";
+    /** Constructor of the engine, null if the engine is not available */
+    private static final Constructor<? extends BlockCipher> CONSTRUCTOR = find();
+
+    private VectorEngineLoader() {
+    }
+
+    /**
+     * Check if the vector engine can be used.
+     *
+     * @return true if the module is available and the platform has wide enough SIMD registers
+     */
+    static boolean isAvailable() {
+        return CONSTRUCTOR != null;
+    }
+
+    /**
+     * Create an instance of the vector engine, or of the table engine if the vector one is not available.
+     *
+     * @param key expanded key
+     * @return new block cipher
+     */
+    static BlockCipher create(ExpandedKey key) {
+        if (CONSTRUCTOR == null)
+            return new TableAdvancedEncryptionStandard(key);
+        try {
+            return CONSTRUCTOR.newInstance(key);
+        }
+        catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Vector engine cannot be created.", e);
+        }
+    }
+
+    /**
+     * Find the constructor of the vector engine.
+     *
+     * @return the constructor, null if the class or the module is missing or the engine is not supported
+     */
+    private static Constructor<? extends BlockCipher> find() {
+        try {
+            Class<? extends BlockCipher> type = Class.forName(CLASS_NAME).asSubclass(BlockCipher.class);
+            if (!(Boolean)type.getMethod("isSupported").invoke(null))
+                return null;
+            return type.getConstructor(ExpandedKey.class);
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            // compiled without JDK 17, started on an older JDK or without the incubator module
+            return null;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package aes;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Known-answer tests of all engines: FIPS-197 Appendix C (AES-128, AES-192, AES-256),
+ * SP 800-38A F.1.1 (ECB) and F.5.1 (CTR) and the GCM test cases 3 and 4 of the GCM
+ * specification (McGrew, Viega), and random keys and blocks compared with the reference
+ * engine. The tests of the vector engine are skipped when the incubator module is not
+ * available, they do not test the table engine again.
+ */
+class BlockCipherTest {
+    private static final String FIPS_PLAINTEXT = "00112233445566778899aabbccddeeff";
+    private static final String SP_KEY = "2b7e151628aed2a6abf7158809cf4f3c";
+    private static final String SP_PLAINTEXT = "6bc1bee22e409f96e93d7e117393172a" + "ae2d8a571e03ac9c9eb76fac45af8e51"
+            + "30c81c46a35ce411e5fbc1191a0a52ef" + "f69f2445df4f9b17ad2b417be66c3710";
+    private static final String GCM_KEY = "feffe9928665731c6d6a8f9467308308";
+    private static final String GCM_NONCE = "cafebabefacedbaddecaf888";
+    private static final String GCM_PLAINTEXT = "d9313225f88406e5a55909c5aff5269a86a7a9531534f7da2e4c303d8a318a72"
+            + "1c3c0c95956809532fcf0e2449a6b525b16aedf5aa0de657ba637b391aafd255";
+    private static final String GCM_CIPHERTEXT = "42831ec2217774244b7221b784d0d49ce3aa212f2c02a4e035c17e2329aca12e"
+            + "21d514b25466931c7d8f6a5aac84aa051ba30b396a0aac973d58e091473f5985";
+
+    @Test
+    void vectorEngineIsLoaded() {
+        assumeTrue(VectorEngineLoader.isAvailable(), "module jdk.incubator.vector is not available");
+        assertEquals("aes.VectorAdvancedEncryptionStandard",
+                CipherEngine.VECTOR.create(ExpandedKey.of(new byte[16])).getClass().getName());
+    }
+
+    @ParameterizedTest
+    @EnumSource(CipherEngine.class)
+    void fips197(CipherEngine engine) {
+        assertBlock(engine, "000102030405060708090a0b0c0d0e0f", "69c4e0d86a7b0430d8cdb78070b4c55a");
+        assertBlock(engine, "000102030405060708090a0b0c0d0e0f1011121314151617", "dda97ca4864cdfe06eaf70a0ec0d7191");
+        assertBlock(engine, "000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f",
+                "8ea2b7ca516745bfeafc49904b496089");
+    }
+
+    @ParameterizedTest
+    @EnumSource(CipherEngine.class)
+    void ecbManyBlocks(CipherEngine engine) {
+        byte[] ciphertext = bytes("3ad77bb40d7a3660a89ecaf32466ef97" + "f5d3d58503b9699de785895a96fdbaaf"
+                + "43b1cd7f598ece23881b00e3ed030688" + "7b0c785e27e8ad3f8223207104725dd4");
+        int copies = 37; // more than one batch of the multi-block engines and a remainder
+        byte[] plaintext = repeat(bytes(SP_PLAINTEXT), copies);
+        byte[] expected = repeat(ciphertext, copies);
+        int blocks = plaintext.length / BlockCipher.BLOCK_SIZE;
+        BlockCipher cipher = create(engine, SP_KEY);
+
+        for (boolean direct : new boolean[] { false, true }) {
+            ByteBuffer in = allocate(plaintext.length, direct).put(plaintext).flip();
+            ByteBuffer out = allocate(plaintext.length, direct);
+            cipher.encryptBlocks(in, out, blocks);
+            out.flip();
+            assertArrayEquals(expected, array(out.duplicate()));
+
+            ByteBuffer back = allocate(plaintext.length, direct);
+            cipher.decryptBlocks(out, back, blocks);
+            assertArrayEquals(plaintext, array(back.flip()));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CipherEngine.class)
+    void ctr(CipherEngine engine) {
+        BlockCipher cipher = create(engine, SP_KEY);
+        CounterMode ctr = new CounterMode(cipher, bytes("f0f1f2f3f4f5f6f7f8f9fafbfcfdfeff"));
+        ByteBuffer data = ByteBuffer.wrap(bytes(SP_PLAINTEXT));
+        ctr.apply(0, data);
+        assertArrayEquals(bytes("874d6191b620e3261bef6864990db6ce" + "9806f66b7970fdff8617187bb9fffdff"
+                + "5ae4df3edbd5d35e5b4f09020db03eab" + "1e031dda2fbe03d1792170a0f3009cee"), data.array());
+
+        data = ByteBuffer.wrap(bytes(SP_PLAINTEXT));
+        data.position(2 * BlockCipher.BLOCK_SIZE); // any range can be processed separately
+        ctr.apply(2, data);
+        assertArrayEquals(bytes("5ae4df3edbd5d35e5b4f09020db03eab" + "1e031dda2fbe03d1792170a0f3009cee"),
+                Arrays.copyOfRange(data.array(), 2 * BlockCipher.BLOCK_SIZE, data.capacity()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CipherEngine.class)
+    void gcm(CipherEngine engine) {
+        assertGcm(engine, new byte[0], bytes(GCM_PLAINTEXT), bytes(GCM_CIPHERTEXT),
+                bytes("4d5c2af327cd64a62cf35abd2ba6fab4"));
+        int length = GCM_PLAINTEXT.length() / 2 - 4;
+        assertGcm(engine, bytes("feedfacedeadbeeffeedfacedeadbeefabaddad2"),
+                Arrays.copyOf(bytes(GCM_PLAINTEXT), length), Arrays.copyOf(bytes(GCM_CIPHERTEXT), length),
+                bytes("5bc94fbc3221a5db94fae95ae7121a47"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CipherEngine.class)
+    void randomBlocksMatchTheReferenceEngine(CipherEngine engine) {
+        Random random = new Random(engine.ordinal());
+        for (int keyLength : new int[] { 16, 24, 32 }) {
+            for (int i = 0; i < 20; i++) {
+                byte[] key = new byte[keyLength];
+                random.nextBytes(key);
+                byte[] data = new byte[(1 + random.nextInt(40)) * BlockCipher.BLOCK_SIZE];
+                random.nextBytes(data);
+                BlockCipher reference = CipherEngine.REFERENCE.create(ExpandedKey.of(key));
+                BlockCipher cipher = create(engine, key);
+                int blocks = data.length / BlockCipher.BLOCK_SIZE;
+
+                byte[] expected = data.clone();
+                for (int j = 0; j < expected.length; j += BlockCipher.BLOCK_SIZE) {
+                    reference.encryptBlock(expected, j, expected, j);
+                }
+                ByteBuffer out = ByteBuffer.allocate(data.length);
+                cipher.encryptBlocks(ByteBuffer.wrap(data), out, blocks);
+                assertArrayEquals(expected, out.array(), "key " + Arrays.toString(key));
+
+                ByteBuffer back = ByteBuffer.allocate(data.length);
+                cipher.decryptBlocks(out.flip(), back, blocks);
+                assertArrayEquals(data, back.array(), "key " + Arrays.toString(key));
+            }
+        }
+    }
+
+    /**
+     * Check encryption and decryption of one block by the byte array and the buffer methods.
+     *
+     * @param engine tested engine
+     * @param key key in hexadecimal form
+     * @param ciphertext expected ciphertext of {@link #FIPS_PLAINTEXT}
+     */
+    private static void assertBlock(CipherEngine engine, String key, String ciphertext) {
+        BlockCipher cipher = create(engine, key);
+        byte[] block = bytes(FIPS_PLAINTEXT);
+        cipher.encryptBlock(block, 0, block, 0);
+        assertArrayEquals(bytes(ciphertext), block);
+        cipher.decryptBlock(block, 0, block, 0);
+        assertArrayEquals(bytes(FIPS_PLAINTEXT), block);
+
+        ByteBuffer out = ByteBuffer.allocate(BlockCipher.BLOCK_SIZE);
+        cipher.encryptBlock(ByteBuffer.wrap(bytes(FIPS_PLAINTEXT)), out);
+        assertArrayEquals(bytes(ciphertext), out.array());
+    }
+
+    /**
+     * Check GCM encryption, decryption and rejection of a modified ciphertext.
+     *
+     * @param engine tested engine
+     * @param aad additional authenticated data
+     * @param plaintext plaintext
+     * @param ciphertext expected ciphertext
+     * @param tag expected tag
+     */
+    private static void assertGcm(CipherEngine engine, byte[] aad, byte[] plaintext, byte[] ciphertext, byte[] tag) {
+        BlockCipher cipher = create(engine, GCM_KEY);
+        GaloisCounterMode gcm = new GaloisCounterMode(cipher, GaloisCounterMode.createHash(cipher));
+        ByteBuffer data = ByteBuffer.wrap(plaintext.clone());
+        byte[] actual = new byte[GaloisCounterMode.TAG_SIZE];
+        gcm.encrypt(bytes(GCM_NONCE), aad, data, actual, 0);
+        assertArrayEquals(ciphertext, data.array());
+        assertArrayEquals(tag, actual);
+
+        data.clear();
+        assertTrue(gcm.decrypt(bytes(GCM_NONCE), aad, data, tag, 0));
+        assertArrayEquals(plaintext, data.array());
+
+        byte[] modified = ciphertext.clone();
+        modified[modified.length - 1] ^= 1;
+        assertFalse(gcm.decrypt(bytes(GCM_NONCE), aad, ByteBuffer.wrap(modified), tag, 0));
+    }
+
+    /**
+     * Create the cipher, the test is skipped if the vector engine would fall back to the table engine.
+     *
+     * @param engine tested engine
+     * @param key key in hexadecimal form
+     * @return the cipher
+     */
+    private static BlockCipher create(CipherEngine engine, String key) {
+        return create(engine, bytes(key));
+    }
+
+    /**
+     * Create the cipher, the test is skipped if the vector engine would fall back to the table engine.
+     *
+     * @param engine tested engine
+     * @param key the key
+     * @return the cipher
+     */
+    private static BlockCipher create(CipherEngine engine, byte[] key) {
+        if (engine == CipherEngine.VECTOR)
+            assumeTrue(VectorEngineLoader.isAvailable(), "module jdk.incubator.vector is not available");
+        return engine.create(ExpandedKey.of(key));
+    }
+
+    static byte[] bytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static byte[] repeat(byte[] data, int copies) {
+        byte[] result = new byte[data.length * copies];
+        for (int i = 0; i < copies; i++) {
+            System.arraycopy(data, 0, result, i * data.length, data.length);
+        }
+        return result;
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static byte[] array(ByteBuffer buffer) {
+        byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+        return array;
+    }
+}
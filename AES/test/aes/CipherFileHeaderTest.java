@@ -0,0 +1,46 @@
+package aes;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Writing and reading of the header of the binary ciphertext files.
+ */
+class CipherFileHeaderTest {
+    @Test
+    void roundTrip() throws IOException {
+        byte[] iv = BlockCipherTest.bytes("f0f1f2f3f4f5f6f7f8f9fafbfcfdfeff");
+        for (CipherMode mode : CipherMode.values()) {
+            ByteBuffer buffer = ByteBuffer.allocate(CipherFileHeader.SIZE);
+            new CipherFileHeader(mode, 100_003, iv).write(buffer);
+            assertEquals(CipherFileHeader.SIZE, buffer.position());
+
+            CipherFileHeader header = CipherFileHeader.read(buffer.flip());
+            assertEquals(mode, header.getMode());
+            assertEquals(100_003, header.getLength());
+            assertArrayEquals(iv, header.getIv());
+        }
+    }
+
+    @Test
+    void invalidHeaders() {
+        ByteBuffer buffer = ByteBuffer.allocate(CipherFileHeader.SIZE);
+        new CipherFileHeader(CipherMode.ECB, 16, new byte[CipherFileHeader.IV_SIZE]).write(buffer);
+        byte[] valid = buffer.array();
+
+        byte[] magic = valid.clone();
+        magic[0] ^= 1;
+        assertThrows(IOException.class, () -> CipherFileHeader.read(ByteBuffer.wrap(magic)));
+        byte[] version = valid.clone();
+        version[4] ^= 1;
+        assertThrows(IOException.class, () -> CipherFileHeader.read(ByteBuffer.wrap(version)));
+        byte[] length = valid.clone();
+        length[8] = (byte)0x80; // negative length
+        assertThrows(IOException.class, () -> CipherFileHeader.read(ByteBuffer.wrap(length)));
+    }
+}
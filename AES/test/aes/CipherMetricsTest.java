@@ -0,0 +1,42 @@
+package aes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Counting of the metrics and the lazy registration of the MXBean.
+ */
+class CipherMetricsTest {
+    @AfterEach
+    void disable() {
+        CipherMetrics.setSampling(0);
+        CipherMetrics.reset();
+    }
+
+    @Test
+    void disabledMetricsAreNotRegisteredNorCounted() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(CipherMetrics.OBJECT_NAME);
+        CipherMetrics.reset();
+        assertFalse(CipherMetrics.isEnabled());
+        assertFalse(server.isRegistered(name), "disabled metrics registered the MXBean");
+        assertEquals(0, CipherMetrics.start());
+        CipherMetrics.stop(CipherMetrics.Stage.CIPHER, 0, 4096);
+
+        CipherMetrics.setSampling(1);
+        assertTrue(server.isRegistered(name));
+        assertEquals(0L, server.getAttribute(name, "Bytes"));
+        CipherMetrics.stop(CipherMetrics.Stage.CIPHER, CipherMetrics.start(), 4096);
+        assertEquals(4096L, server.getAttribute(name, "Bytes"));
+        assertEquals(256L, server.getAttribute(name, "Blocks"));
+        assertEquals(1, server.getAttribute(name, "Sampling"));
+    }
+}
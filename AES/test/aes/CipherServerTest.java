@@ -0,0 +1,153 @@
+package aes;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Requests to the {@link CipherServer} over localhost: round trips with the default
+ * key and the key header, equality with {@link EncryptingOutputStream}, the error
+ * statuses, an aborted response of a truncated ciphertext and the threads of the requests.
+ */
+class CipherServerTest {
+    private static final byte[] DEFAULT_KEY = BlockCipherTest.bytes("000102030405060708090a0b0c0d0e0f");
+    private static final String OTHER_KEY = "hex:000102030405060708090a0b0c0d0e0f1011121314151617";
+
+    private static CipherServer server;
+    private static HttpClient client;
+    private static String url;
+
+    @BeforeAll
+    static void start() throws IOException {
+        server = new CipherServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                CipherEngine.CONSTANT_TIME, DEFAULT_KEY, new KeyScheduleCache());
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterAll
+    static void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void roundTrip() throws Exception {
+        for (int length : new int[] { 0, 1, 16, 100_003 }) {
+            byte[] data = random(length);
+            HttpResponse<byte[]> encrypted = post("/encrypt", data, null);
+            assertEquals(200, encrypted.statusCode());
+            assertArrayEquals(encryptLocally(data), encrypted.body(), "length " + length);
+
+            HttpResponse<byte[]> decrypted = post("/decrypt", encrypted.body(), null);
+            assertEquals(200, decrypted.statusCode());
+            assertArrayEquals(data, decrypted.body(), "length " + length);
+        }
+    }
+
+    @Test
+    void keyHeader() throws Exception {
+        byte[] data = random(5000);
+        byte[] encrypted = post("/encrypt", data, OTHER_KEY).body();
+        assertArrayEquals(data, post("/decrypt", encrypted, OTHER_KEY).body());
+        // the default key does not decrypt it, the padding is not valid
+        assertThrows(IOException.class, () -> post("/decrypt", encrypted, null));
+    }
+
+    @Test
+    void concurrentRequests() throws Exception {
+        List<byte[]> data = new ArrayList<>();
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            data.add(random(10_000 + i));
+            responses.add(client.sendAsync(request("/encrypt", data.get(i), i % 2 == 0 ? null : OTHER_KEY),
+                    HttpResponse.BodyHandlers.ofByteArray()));
+        }
+        for (int i = 0; i < responses.size(); i++) {
+            byte[] encrypted = responses.get(i).get().body();
+            assertArrayEquals(data.get(i), post("/decrypt", encrypted, i % 2 == 0 ? null : OTHER_KEY).body());
+        }
+    }
+
+    @Test
+    void errors() throws Exception {
+        assertEquals(400, post("/encrypt", new byte[1], "short").statusCode());
+        assertEquals(400, post("/decrypt", new byte[5], null).statusCode());
+        assertEquals(404, post("/encrypt/more", new byte[1], null).statusCode());
+        HttpResponse<byte[]> get = client.send(HttpRequest.newBuilder(URI.create(url + "/encrypt")).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(405, get.statusCode());
+    }
+
+    @Test
+    void truncatedCiphertextAbortsTheResponse() throws Exception {
+        byte[] encrypted = post("/encrypt", random(100_003), null).body();
+        for (int length : new int[] { CipherFileHeader.SIZE + 8, 50_000, encrypted.length - 1 }) {
+            byte[] truncated = Arrays.copyOf(encrypted, length);
+            assertThrows(IOException.class, () -> post("/decrypt", truncated, null), "length " + length);
+        }
+    }
+
+    @Test
+    void executor() throws Exception {
+        ExecutorService executor = CipherServer.createExecutor();
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get();
+            if (Runtime.version().feature() >= 21)
+                assertTrue((Boolean)Thread.class.getMethod("isVirtual").invoke(thread), "virtual thread expected");
+            else
+                assertTrue(executor instanceof ThreadPoolExecutor, "cached pool expected before Java 21");
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static HttpResponse<byte[]> post(String path, byte[] body, String key)
+            throws IOException, InterruptedException {
+        return client.send(request(path, body, key), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static HttpRequest request(String path, byte[] body, String key) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url + path))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (key != null)
+            builder.header(CipherServer.KEY_HEADER, key);
+        return builder.build();
+    }
+
+    private static byte[] encryptLocally(byte[] data) throws IOException {
+        ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+        try (EncryptingOutputStream out = new EncryptingOutputStream(ciphertext,
+                CipherEngine.TABLE.create(ExpandedKey.of(DEFAULT_KEY)))) {
+            out.write(data);
+        }
+        return ciphertext.toByteArray();
+    }
+
+    private static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,256 @@
+package aes;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips of the file processors and the streams for lengths around the block and chunk
+ * boundaries and handling of invalid files.
+ */
+class FileProcessorTest {
+    private static final int[] LENGTHS = { 0, 1, 15, 16, 17, 4095, 4096, 100_003, (1 << 20) + 5 };
+    private static final int SMALL_BUFFER = 4096; // small chunks, so the files have several of them
+    private static final ExpandedKey KEY = ExpandedKey.of(BlockCipherTest.bytes("000102030405060708090a0b0c0d0e0f"));
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @TempDir
+    Path directory;
+
+    @AfterAll
+    static void shutdown() {
+        POOL.shutdown();
+    }
+
+    @Test
+    void channel() throws IOException {
+        assertRoundTrips("channel", engine -> new ChannelFileProcessor(engine.create(KEY), SMALL_BUFFER));
+    }
+
+    @Test
+    void mapped() throws IOException {
+        assertRoundTrips("mapped", engine -> new MappedFileProcessor(engine.create(KEY), SMALL_BUFFER));
+    }
+
+    @Test
+    void pipelined() throws IOException {
+        assertRoundTrips("pipelined", engine -> new PipelinedFileProcessor(() -> engine.create(KEY), 3, SMALL_BUFFER));
+    }
+
+    @Test
+    void counter() throws IOException {
+        assertRoundTrips("ctr", engine -> new ParallelCounterFileProcessor(() -> engine.create(KEY), POOL));
+    }
+
+    @Test
+    void gcm() throws IOException {
+        assertRoundTrips("gcm", engine -> new GcmFileProcessor(() -> engine.create(KEY), POOL));
+    }
+
+    @Test
+    void truncatedCiphertextFails() throws IOException {
+        Path plaintext = write("plain", random(100_003));
+        Path ciphertext = directory.resolve("cipher");
+        FileProcessor channel = new ChannelFileProcessor(CipherEngine.TABLE.create(KEY), SMALL_BUFFER);
+        channel.encrypt(plaintext, ciphertext);
+        byte[] data = Files.readAllBytes(ciphertext);
+        write("cipher", Arrays.copyOf(data, data.length - BlockCipher.BLOCK_SIZE));
+
+        assertThrows(EOFException.class, () -> channel.decrypt(ciphertext, directory.resolve("out")));
+
+        FileProcessor pipelined = new PipelinedFileProcessor(() -> CipherEngine.TABLE.create(KEY), 2, SMALL_BUFFER);
+        assertThrows(EOFException.class, () -> pipelined.decrypt(ciphertext, directory.resolve("out")));
+        // the chunks were returned to the pool, so the processor works after a failure
+        write("cipher", data);
+        pipelined.decrypt(ciphertext, directory.resolve("out"));
+        assertArrayEquals(Files.readAllBytes(plaintext), Files.readAllBytes(directory.resolve("out")));
+    }
+
+    @Test
+    void ecbProcessorsWriteTheSameCiphertext() throws IOException {
+        Path plaintext = write("plain", random(100_003));
+        List<FileProcessor> processors = List.of(new ChannelFileProcessor(CipherEngine.TABLE.create(KEY)),
+                new MappedFileProcessor(CipherEngine.CONSTANT_TIME.create(KEY), SMALL_BUFFER),
+                new PipelinedFileProcessor(() -> CipherEngine.REFERENCE.create(KEY), 2, SMALL_BUFFER));
+        byte[] expected = null;
+        for (FileProcessor processor : processors) {
+            Path ciphertext = directory.resolve("cipher");
+            processor.encrypt(plaintext, ciphertext);
+            if (expected == null)
+                expected = Files.readAllBytes(ciphertext);
+            else
+                assertArrayEquals(expected, Files.readAllBytes(ciphertext), processor.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    void modifiedGcmCiphertextIsRejected() throws IOException {
+        Path plaintext = write("plain", random(3 * GcmFileProcessor.SEGMENT_SIZE + 7));
+        Path ciphertext = directory.resolve("cipher");
+        Path target = directory.resolve("out");
+        GcmFileProcessor gcm = new GcmFileProcessor(() -> CipherEngine.TABLE.create(KEY), POOL);
+        gcm.encrypt(plaintext, ciphertext);
+        byte[] data = Files.readAllBytes(ciphertext);
+        data[data.length / 2] ^= 1;
+        write("cipher", data);
+
+        assertThrows(IntegrityException.class, () -> gcm.verify(ciphertext));
+        assertThrows(IntegrityException.class, () -> gcm.decrypt(ciphertext, target));
+        assertFalse(Files.exists(target), "unauthenticated plaintext was left");
+    }
+
+    @Test
+    void range() throws IOException {
+        byte[] data = random(100_003);
+        Path plaintext = write("plain", data);
+        List<FileProcessor> processors = List.of(new ChannelFileProcessor(CipherEngine.TABLE.create(KEY)),
+                new ParallelCounterFileProcessor(() -> CipherEngine.TABLE.create(KEY), POOL),
+                new GcmFileProcessor(() -> CipherEngine.TABLE.create(KEY), POOL));
+        RangeDecryptor decryptor = new RangeDecryptor(CipherEngine.TABLE.create(KEY));
+        for (FileProcessor processor : processors) {
+            Path ciphertext = directory.resolve("cipher");
+            processor.encrypt(plaintext, ciphertext);
+            assertRanges(data, decryptor, ciphertext, processor.getClass().getSimpleName());
+        }
+
+        Path padded = directory.resolve("stream");
+        try (EncryptingOutputStream out = new EncryptingOutputStream(Files.newOutputStream(padded),
+                CipherEngine.TABLE.create(KEY))) {
+            out.write(data);
+        }
+        assertRanges(data, decryptor, padded, "stream");
+    }
+
+    @Test
+    void streams() throws IOException {
+        for (CipherEngine engine : CipherEngine.values()) {
+            for (int length : LENGTHS) {
+                byte[] data = random(length);
+                ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+                try (EncryptingOutputStream out = new EncryptingOutputStream(ciphertext, engine.create(KEY),
+                        SMALL_BUFFER)) {
+                    out.write(data, 0, length / 2);
+                    out.write(data, length / 2, length - length / 2);
+                }
+                byte[] encrypted = ciphertext.toByteArray();
+                String message = engine + " length " + length;
+                assertEquals(CipherFileHeader.SIZE + (length / 16 + 1) * 16, encrypted.length, message);
+                assertArrayEquals(data, readAll(new DecryptingInputStream(new ByteArrayInputStream(encrypted),
+                        engine.create(KEY), new byte[SMALL_BUFFER])), message);
+
+                byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - BlockCipher.BLOCK_SIZE);
+                assertThrows(IOException.class, () -> readAll(new DecryptingInputStream(
+                        new ByteArrayInputStream(truncated), engine.create(KEY))), message);
+            }
+        }
+    }
+
+    @Test
+    void batchFailsInputsWithTheSameTarget() throws IOException {
+        Files.createDirectories(directory.resolve("a"));
+        Files.createDirectories(directory.resolve("b"));
+        Path first = write("a/f", random(10));
+        Path second = write("b/f", random(20));
+        Path other = write("a/g", random(30));
+        BatchProcessor batch = new BatchProcessor(mode -> new ChannelFileProcessor(CipherEngine.TABLE.create(KEY)), 2);
+        List<BatchProcessor.Result> results = batch.encrypt(List.of(directory.resolve("a"), directory.resolve("b")),
+                directory.resolve("out"), CipherMode.ECB);
+
+        assertEquals(3, results.size());
+        for (BatchProcessor.Result result : results) {
+            boolean duplicate = result.getSource().equals(first) || result.getSource().equals(second);
+            assertEquals(!duplicate, result.isSuccessful(), result.getSource().toString());
+        }
+        assertTrue(results.stream().anyMatch(result -> result.getSource().equals(other)));
+        assertFalse(Files.exists(directory.resolve("out/f" + BatchProcessor.SUFFIX)));
+    }
+
+    @Test
+    void batchDeletesThePlaintextOfFailedFiles() throws IOException {
+        BatchProcessor batch = new BatchProcessor(mode -> new ChannelFileProcessor(CipherEngine.TABLE.create(KEY)), 2);
+        Path plaintext = write("f", random(100_003));
+        batch.encrypt(List.of(plaintext), directory.resolve("cipher"), CipherMode.ECB);
+        Path ciphertext = directory.resolve("cipher/f" + BatchProcessor.SUFFIX);
+        byte[] data = Files.readAllBytes(ciphertext);
+        Files.write(ciphertext, Arrays.copyOf(data, data.length - BlockCipher.BLOCK_SIZE));
+
+        List<BatchProcessor.Result> results = batch.decrypt(List.of(ciphertext), directory.resolve("out"));
+        assertFalse(results.get(0).isSuccessful());
+        assertFalse(Files.exists(directory.resolve("out/f")), "a part of the plaintext was left");
+    }
+
+    /**
+     * Encrypt and decrypt files of all {@link #LENGTHS} by processors of all engines.
+     *
+     * @param name name of the processor for the messages
+     * @param processors creates the processor with the engine
+     * @throws IOException exception during processing
+     */
+    private void assertRoundTrips(String name, Function<CipherEngine, FileProcessor> processors) throws IOException {
+        for (CipherEngine engine : CipherEngine.values()) {
+            FileProcessor processor = processors.apply(engine);
+            for (int length : LENGTHS) {
+                byte[] data = random(length);
+                Path plaintext = write("plain", data);
+                Path ciphertext = directory.resolve("cipher");
+                Path decrypted = directory.resolve("decrypted");
+                processor.encrypt(plaintext, ciphertext);
+                processor.decrypt(ciphertext, decrypted);
+                assertArrayEquals(data, Files.readAllBytes(decrypted), name + " " + engine + " length " + length);
+            }
+        }
+    }
+
+    /**
+     * Decrypt ranges at the block and segment boundaries and a range cut at the end of the plaintext.
+     *
+     * @param data whole plaintext
+     * @param decryptor tested decryptor
+     * @param ciphertext ciphertext file of the plaintext
+     * @param name name of the format for the messages
+     * @throws IOException exception during decryption
+     */
+    private static void assertRanges(byte[] data, RangeDecryptor decryptor, Path ciphertext, String name)
+            throws IOException {
+        for (int offset : new int[] { 0, 1, 15, 16, 4097, 65_530, 99_990, 100_003 }) {
+            int length = Math.min(1000, data.length - offset);
+            assertArrayEquals(Arrays.copyOfRange(data, offset, offset + length),
+                    decryptor.decrypt(ciphertext, offset, 1000), name + " offset " + offset);
+        }
+    }
+
+    private Path write(String name, byte[] data) throws IOException {
+        return Files.write(directory.resolve(name), data);
+    }
+
+    private static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+}
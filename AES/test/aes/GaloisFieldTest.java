@@ -0,0 +1,45 @@
+package aes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tables of the multiplication in GF(2^8) compared with the multiplication by shifts and XORs.
+ */
+class GaloisFieldTest {
+    @Test
+    void multiplyConstantTime() {
+        for (int a = 0; a < 256; a++) {
+            for (int b = 0; b < 256; b++) {
+                assertEquals(multiply(a, b), GaloisField.multiplyConstantTime(a, b), a + " * " + b);
+            }
+        }
+        assertEquals(0xc1, GaloisField.multiplyConstantTime(0x57, 0x83)); // FIPS-197 4.2
+    }
+
+    @Test
+    void tables() {
+        for (int a = 0; a < 256; a++) {
+            assertEquals(multiply(a, 2), GaloisField.MUL2[a]);
+            assertEquals(multiply(a, 3), GaloisField.MUL3[a]);
+            assertEquals(multiply(a, 9), GaloisField.MUL9[a]);
+            assertEquals(multiply(a, 11), GaloisField.MUL11[a]);
+            assertEquals(multiply(a, 13), GaloisField.MUL13[a]);
+            assertEquals(multiply(a, 14), GaloisField.MUL14[a]);
+        }
+    }
+
+    private static int multiply(int a, int b) {
+        int p = 0;
+        while (b != 0) {
+            if ((b & 1) != 0)
+                p ^= a;
+            a <<= 1;
+            if ((a & 0x100) != 0)
+                a ^= 0x11b;
+            b >>= 1;
+        }
+        return p;
+    }
+}
@@ -0,0 +1,32 @@
+package aes;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Conversion of blocks from/to the lines of the text files.
+ */
+class HexTest {
+    @Test
+    void roundTrip() {
+        byte[] block = BlockCipherTest.bytes("00017f80ff102030405060708090a0b0");
+        String line = Hex.toString(block, 0, block.length);
+        assertEquals("00 01 7f 80 ff 10 20 30 40 50 60 70 80 90 a0 b0 ", line);
+
+        byte[] parsed = new byte[BlockCipher.BLOCK_SIZE];
+        assertEquals(BlockCipher.BLOCK_SIZE, Hex.parse(line, parsed, 0));
+        assertArrayEquals(block, parsed);
+        assertEquals(2, Hex.parse("  A 0b", parsed, 0)); // upper case and repeated spaces
+    }
+
+    @Test
+    void invalidLines() {
+        byte[] block = new byte[BlockCipher.BLOCK_SIZE];
+        assertThrows(NumberFormatException.class, () -> Hex.parse("00 0g", block, 0));
+        assertThrows(NumberFormatException.class, () -> Hex.parse("001", block, 0));
+        assertThrows(NumberFormatException.class, () -> Hex.parse("00 ".repeat(17), block, 0));
+    }
+}
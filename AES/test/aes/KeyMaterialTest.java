@@ -0,0 +1,42 @@
+package aes;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Conversion of the keys entered as text.
+ */
+class KeyMaterialTest {
+    @Test
+    void parse() {
+        byte[] key = BlockCipherTest.bytes("000102030405060708090a0b0c0d0e0f1011121314151617");
+        assertArrayEquals(key, KeyMaterial.parse("hex:000102030405060708090a0b0c0d0e0f1011121314151617"));
+        assertArrayEquals(key, KeyMaterial.parse("HEX: 000102030405060708090A0B0C0D0E0F1011121314151617 "));
+        assertArrayEquals("0123456789abcdef".getBytes(), KeyMaterial.parse("0123456789abcdef"));
+    }
+
+    @Test
+    void everyCharacterIsOneByte() {
+        // characters above U+00FF keep their lower 8 bits like the original key expansion
+        byte[] key = KeyMaterial.parse("\u0141\u00e9cdefghijklmnop");
+        assertArrayEquals(BlockCipherTest.bytes("41e9636465666768696a6b6c6d6e6f70"), key);
+
+        BlockCipher expected = CipherEngine.REFERENCE.create(ExpandedKey.of(key));
+        BlockCipher actual = CipherEngine.REFERENCE.create(ExpandedKey.of("\u0141\u00e9cdefghijklmnop"));
+        byte[] a = new byte[BlockCipher.BLOCK_SIZE];
+        byte[] b = new byte[BlockCipher.BLOCK_SIZE];
+        expected.encryptBlock(a, 0, a, 0);
+        actual.encryptBlock(b, 0, b, 0);
+        assertArrayEquals(a, b);
+    }
+
+    @Test
+    void invalidKeys() {
+        assertThrows(IllegalArgumentException.class, () -> KeyMaterial.parse("short"));
+        assertThrows(IllegalArgumentException.class, () -> KeyMaterial.parse("hex:000102"));
+        assertThrows(IllegalArgumentException.class, () -> KeyMaterial.parse("hex:0g0102030405060708090a0b0c0d0e0f"));
+        assertThrows(IllegalArgumentException.class, () -> ExpandedKey.of("0123456789abcde"));
+    }
+}
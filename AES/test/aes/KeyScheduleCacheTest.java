@@ -0,0 +1,60 @@
+package aes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Reuse and eviction of the expanded keys and of the idle instances of the cipher.
+ */
+class KeyScheduleCacheTest {
+    @Test
+    void equalKeysShareTheExpandedKey() {
+        KeyScheduleCache cache = new KeyScheduleCache();
+        byte[] key = BlockCipherTest.bytes("000102030405060708090a0b0c0d0e0f");
+        byte[] array = key.clone();
+        ExpandedKey expanded = cache.get(array);
+        array[0] ^= 1; // the cache keeps its own copy of the key
+        assertSame(expanded, cache.get(key));
+        assertSame(expanded, cache.get(key.clone()));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedKeyIsEvicted() {
+        KeyScheduleCache cache = new KeyScheduleCache(2);
+        byte[] a = new byte[16];
+        byte[] b = new byte[16];
+        byte[] c = new byte[16];
+        b[0] = 1;
+        c[0] = 2;
+        ExpandedKey first = cache.get(a);
+        ExpandedKey second = cache.get(b);
+        cache.get(a);
+        cache.get(c);
+
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get(a));
+        assertNotSame(second, cache.get(b));
+    }
+
+    @Test
+    void releasedCiphersAreReused() {
+        KeyScheduleCache cache = new KeyScheduleCache(1);
+        byte[] key = new byte[16];
+        BlockCipher first = cache.acquire(key, CipherEngine.TABLE);
+        BlockCipher second = cache.acquire(key, CipherEngine.TABLE);
+        assertNotSame(first, second);
+        cache.release(key, CipherEngine.TABLE, first);
+        assertSame(first, cache.acquire(key, CipherEngine.TABLE));
+        assertNotSame(first, cache.acquire(key, CipherEngine.REFERENCE)); // idle instances are kept per engine
+
+        cache.release(key, CipherEngine.TABLE, second);
+        byte[] other = new byte[16];
+        other[0] = 1;
+        cache.get(other); // evicts the key with its idle instances
+        assertNotSame(second, cache.acquire(key, CipherEngine.TABLE));
+    }
+}